@@ -0,0 +1,163 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.campusacademy.java.agriapi.AgriapiApplication;
+import eu.campusacademy.java.agriapi.services.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load test of the stats endpoint, synchronous versus asynchronous requests.
+ * <p>
+ *     The application is started with its web server, on a random port, once with agriapi.stats.async.enabled=false
+ *     and once with true. Each time a number of clients send requests in a loop for a duration and the throughput
+ *     and latencies of successful requests are printed, with the number of rejected ones (503 status).
+ *     The web server pool is reduced to server.tomcat.max-threads threads so it saturates as under a burst of load.
+ * </p>
+ * <p>
+ *     It is not a JMH benchmark, JMH measures a method and not a server under concurrent load. Run it with:
+ *     <code>mvn -Pjmh test-compile exec:exec -Djmh.main=eu.campusacademy.java.agriapi.benchmarks.StatsLoadTest -Djmh.args="100000 200 30"</code>,
+ *     the arguments being the scale (number of crops), the number of clients and the duration in seconds by mode.
+ * </p>
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ */
+public class StatsLoadTest {
+
+    private static final int TOMCAT_THREADS = 8;
+
+    public static void main(final String[] pArgs) throws Exception {
+        final int scale = pArgs.length > 0 ? Integer.parseInt(pArgs[0]) : 100000;
+        final int clients = pArgs.length > 1 ? Integer.parseInt(pArgs[1]) : 200;
+        final int seconds = pArgs.length > 2 ? Integer.parseInt(pArgs[2]) : 30;
+        for (final boolean async : new boolean[]{false, true}) {
+            final ConfigurableApplicationContext context = new SpringApplicationBuilder(AgriapiApplication.class)
+                    .properties("server.port=0", "server.tomcat.max-threads=" + TOMCAT_THREADS,
+                            "agriapi.stats.async.enabled=" + async, "agriapi.stats.cache.enabled=false")
+                    .run();
+            try {
+                new SyntheticData(context.getBean(JdbcTemplate.class), context.getBean(DictionaryService.class)).seed(scale);
+                context.getBean(YieldRollupService.class).rebuild();
+                final int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                final String body = context.getBean(ObjectMapper.class).writeValueAsString(getParams());
+                System.out.println((async ? "async" : "sync") + ", " + clients + " clients, " + seconds + " s: "
+                        + run(port, body, clients, Duration.ofSeconds(seconds)));
+            } finally {
+                context.close();
+            }
+        }
+    }
+
+    /**
+     * Return the params of the requests, all varieties of ten departments.
+     * @return the params
+     */
+    private static StatisticParams getParams() {
+        final StatisticParams result = new StatisticParams();
+        result.setTypes(List.of(StatisticType.AVERAGE, StatisticType.MIN, StatisticType.MAX));
+        result.setYear(2018);
+        result.setVarieties(SyntheticData.VARIETIES);
+        final List<String> departments = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            departments.add(SyntheticData.getDepartment(i));
+        }
+        result.setDepartmentCode(departments);
+        return result;
+    }
+
+    /**
+     * Send requests with concurrent clients during a duration.
+     * @param pPort the server port
+     * @param pBody the request body
+     * @param pClients the number of clients
+     * @param pDuration the duration
+     * @return the measures
+     * @throws InterruptedException if interrupted
+     */
+    private static String run(final int pPort, final String pBody, final int pClients, final Duration pDuration) throws InterruptedException {
+        final HttpClient client = HttpClient.newBuilder().executor(Executors.newFixedThreadPool(4)).build();
+        final HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + pPort + "/agriapi/v1/stats"))
+                .header("Content-Type", "application/json")
+                .method("GET", HttpRequest.BodyPublishers.ofString(pBody))
+                .build();
+        final long end = System.nanoTime() + pDuration.toNanos();
+        final Queue<Long> latencies = new ConcurrentLinkedQueue<>();
+        final LongAdder rejected = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final ExecutorService clients = Executors.newFixedThreadPool(pClients);
+        for (int i = 0; i < pClients; i++) {
+            clients.execute(() -> {
+                while (System.nanoTime() < end) {
+                    final long start = System.nanoTime();
+                    try {
+                        final int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        if (200 == status) {
+                            latencies.add(System.nanoTime() - start);
+                        } else if (503 == status) {
+                            rejected.increment();
+                        } else {
+                            failed.increment();
+                        }
+                    } catch (final Exception e) {
+                        failed.increment();
+                    }
+                }
+            });
+        }
+        clients.shutdown();
+        clients.awaitTermination(pDuration.toSeconds() + 60, TimeUnit.SECONDS);
+        final long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        return String.format("%.1f req/s, p50 %.1f ms, p99 %.1f ms, %d ok, %d rejected, %d failed",
+                sorted.length / (double) pDuration.toSeconds(), getPercentile(sorted, 0.5), getPercentile(sorted, 0.99),
+                sorted.length, rejected.sum(), failed.sum());
+    }
+
+    /**
+     * Return a percentile of sorted latencies.
+     * @param pSorted the sorted latencies in nanoseconds
+     * @param pRank the rank, from 0 to 1
+     * @return the percentile in milliseconds, 0 without latency
+     */
+    private static double getPercentile(final long[] pSorted, final double pRank) {
+        if (0 == pSorted.length) {
+            return 0;
+        }
+        return pSorted[(int) Math.min(pSorted.length - 1, Math.ceil(pRank * pSorted.length) - 1)] / 1e6;
+    }
+}
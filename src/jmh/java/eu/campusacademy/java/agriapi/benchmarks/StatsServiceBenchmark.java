@@ -0,0 +1,128 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.benchmarks;
+
+import eu.campusacademy.java.agriapi.AgriapiApplication;
+import eu.campusacademy.java.agriapi.services.*;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StatsService benchmark
+ * <p>
+ *     The application is started without web server on an H2 database seeded with synthetic data, then getStats is
+ *     measured for each location type, statistic type and engine. The results cache is disabled.
+ *     The scale, the number of crops, is a JMH parameter: <code>-p scale=10000,100000,1000000,10000000</code>.
+ *     The largest scales need a larger heap: <code>-jvmArgsAppend -Xmx8g</code>.
+ * </p>
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ * @see <a href="https://openjdk.java.net/projects/code-tools/jmh/">JMH</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatsServiceBenchmark {
+
+    @Param({"10000"})
+    int scale;
+
+    @Param({"CITY", "DEPARTMENT", "REGION"})
+    LocationType locationType;
+
+    @Param({"AVERAGE", "MIN", "MAX"})
+    StatisticType type;
+
+    @Param({"ROLLUP"})
+    StatsEngine engine;
+
+    private ConfigurableApplicationContext context;
+    private StatsService statsService;
+    private StatisticParams params;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.context = new SpringApplicationBuilder(AgriapiApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("agriapi.stats.engine=" + this.engine, "agriapi.stats.cache.enabled=false")
+                .run();
+        new SyntheticData(this.context.getBean(JdbcTemplate.class), this.context.getBean(DictionaryService.class)).seed(this.scale);
+        this.context.getBean(YieldRollupService.class).rebuild();
+        if (StatsEngine.COLUMNAR == this.engine) {
+            this.context.getBean(ColumnarYieldStore.class).load();
+        }
+        this.statsService = this.context.getBean(StatsService.class);
+        this.params = new StatisticParams();
+        this.params.setType(this.type);
+        this.params.setTypes(Collections.singletonList(this.type));
+        this.params.setYear(2018);
+        this.params.setVarieties(SyntheticData.VARIETIES);
+        final List<String> locations = new ArrayList<>();
+        switch (this.locationType) {
+            case CITY: {
+                for (int i = 0; i < 100; i++) {
+                    locations.add(SyntheticData.getCity(i % 10, i / 10));
+                }
+                this.params.setCityCode(locations);
+                break;
+            }
+            case DEPARTMENT: {
+                for (int i = 0; i < 10; i++) {
+                    locations.add(SyntheticData.getDepartment(i));
+                }
+                this.params.setDepartmentCode(locations);
+                break;
+            }
+            case REGION: {
+                locations.add(SyntheticData.getRegion(0));
+                locations.add(SyntheticData.getRegion(1));
+                this.params.setRegionCode(locations);
+                break;
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.context.close();
+    }
+
+    @Benchmark
+    public List<StatisticResult> getStats() {
+        return this.statsService.getStats(this.params);
+    }
+}
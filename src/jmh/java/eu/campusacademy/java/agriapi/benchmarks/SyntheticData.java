@@ -0,0 +1,168 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.benchmarks;
+
+import eu.campusacademy.java.agriapi.services.DictionaryService;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Synthetic farms, plots and crops.
+ * <p>
+ *     Rows are inserted with JDBC batches, without Hibernate, so millions of crops are seeded in a few seconds.
+ *     Varieties and locations are translated to their dictionary ids by the dictionary service.
+ *     Each farm has ten plots and each plot has one crop by year, of a random variety.
+ *     Farms are spread over 95 departments, 13 regions and 300 cities by department.
+ *     The same scale always gives the same data.
+ * </p>
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ */
+public class SyntheticData {
+
+    /**
+     * The seeded varieties.
+     */
+    public static final List<String> VARIETIES = List.of("ALIXAN", "ADVISOR", "HENDRIX", "MAORI", "ILLICO",
+            "RUBISKO", "OREGRAIN", "FRUCTIDOR", "TERROIR", "SYLLON");
+
+    /**
+     * The seeded years.
+     */
+    public static final List<Integer> YEARS = List.of(2017, 2018, 2019);
+
+    private static final int PLOTS_BY_FARM = 10;
+    private static final int DEPARTMENTS = 95;
+    private static final int REGIONS = 13;
+    private static final int CITIES_BY_DEPARTMENT = 300;
+    private static final int BATCH_SIZE = 10000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DictionaryService dictionaryService;
+    private final Random random = new Random(2020);
+    private final List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+
+    public SyntheticData(final JdbcTemplate pJdbcTemplate, final DictionaryService pDictionaryService) {
+        this.jdbcTemplate = pJdbcTemplate;
+        this.dictionaryService = pDictionaryService;
+    }
+
+    /**
+     * Return the code of a department.
+     * @param pIndex the index of the department, from 0 to 94
+     * @return the department code
+     */
+    public static String getDepartment(final int pIndex) {
+        return String.format("%02d", 1 + pIndex % DEPARTMENTS);
+    }
+
+    /**
+     * Return the code of a city.
+     * @param pDepartment the index of the department, from 0 to 94
+     * @param pIndex the index of the city in the department, from 0 to 299
+     * @return the city code
+     */
+    public static String getCity(final int pDepartment, final int pIndex) {
+        return getDepartment(pDepartment) + String.format("%03d", pIndex % CITIES_BY_DEPARTMENT);
+    }
+
+    /**
+     * Return the code of the region of a department.
+     * @param pDepartment the index of the department, from 0 to 94
+     * @return the region code
+     */
+    public static String getRegion(final int pDepartment) {
+        return String.valueOf(1 + pDepartment % DEPARTMENTS % REGIONS);
+    }
+
+    /**
+     * Insert farms, plots and crops until the given number of crops.
+     * <p>
+     *     Ids follow the ids of the rows already in the tables.
+     * </p>
+     * @param pCrops the number of crops
+     */
+    public void seed(final int pCrops) {
+        final long firstFarm = this.getMaxId("farms") + 1;
+        final long firstPlot = this.getMaxId("plots") + 1;
+        long cropId = this.getMaxId("crops") + 1;
+        final int cropsByFarm = PLOTS_BY_FARM * YEARS.size();
+        final int farms = (pCrops + cropsByFarm - 1) / cropsByFarm;
+        for (int i = 0; i < farms; i++) {
+            final int department = i % DEPARTMENTS;
+            this.add("INSERT INTO farms (id, pacage_code, city_id, department_id, region_id) VALUES (?, ?, ?, ?, ?)",
+                    firstFarm + i, String.format("%09d", i), this.dictionaryService.getLocationId(getCity(department, i / DEPARTMENTS)),
+                    this.dictionaryService.getLocationId(getDepartment(department)), this.dictionaryService.getLocationId(getRegion(department)));
+        }
+        this.flush("INSERT INTO farms (id, pacage_code, city_id, department_id, region_id) VALUES (?, ?, ?, ?, ?)");
+        for (int i = 0; i < farms * PLOTS_BY_FARM; i++) {
+            this.add("INSERT INTO plots (id, farm_id, surface) VALUES (?, ?, ?)",
+                    firstPlot + i, firstFarm + i / PLOTS_BY_FARM, BigDecimal.valueOf(100 + this.random.nextInt(2000), 2));
+        }
+        this.flush("INSERT INTO plots (id, farm_id, surface) VALUES (?, ?, ?)");
+        for (int i = 0; i < pCrops; i++) {
+            this.add("INSERT INTO crops (id, plot_id, year, variety_id, quantity) VALUES (?, ?, ?, ?, ?)",
+                    cropId++, firstPlot + i / YEARS.size(), YEARS.get(i % YEARS.size()),
+                    this.dictionaryService.getVarietyId(VARIETIES.get(this.random.nextInt(VARIETIES.size()))),
+                    BigDecimal.valueOf(1000 + this.random.nextInt(150000), 2));
+        }
+        this.flush("INSERT INTO crops (id, plot_id, year, variety_id, quantity) VALUES (?, ?, ?, ?, ?)");
+    }
+
+    /**
+     * Add a row to the current batch and execute it when it is full.
+     * @param pSql the insert statement
+     * @param pValues the row values
+     */
+    private void add(final String pSql, final Object... pValues) {
+        this.batch.add(pValues);
+        if (this.batch.size() == BATCH_SIZE) {
+            this.flush(pSql);
+        }
+    }
+
+    /**
+     * Execute the current batch.
+     * @param pSql the insert statement
+     */
+    private void flush(final String pSql) {
+        if (!this.batch.isEmpty()) {
+            this.jdbcTemplate.batchUpdate(pSql, this.batch);
+            this.batch.clear();
+        }
+    }
+
+    /**
+     * Return the greatest id of a table.
+     * @param pTable the table name
+     * @return the greatest id, 0 if the table is empty
+     */
+    private long getMaxId(final String pTable) {
+        return this.jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + pTable, Long.class);
+    }
+}
@@ -0,0 +1,82 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.benchmarks;
+
+import eu.campusacademy.java.agriapi.services.StatisticType;
+import eu.campusacademy.java.agriapi.services.YieldSummary;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * YieldSummary benchmark
+ * <p>
+ *     The statistics computation without database: crops are added to a summary then its value is computed,
+ *     as StatsService does for each variety.
+ * </p>
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ * @see <a href="https://openjdk.java.net/projects/code-tools/jmh/">JMH</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class YieldSummaryBenchmark {
+
+    @Param({"1000"})
+    int crops;
+
+    @Param({"AVERAGE", "MIN", "MAX"})
+    StatisticType type;
+
+    private BigDecimal[] quantities;
+    private BigDecimal[] surfaces;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final Random random = new Random(2020);
+        this.quantities = new BigDecimal[this.crops];
+        this.surfaces = new BigDecimal[this.crops];
+        for (int i = 0; i < this.crops; i++) {
+            this.quantities[i] = BigDecimal.valueOf(1000 + random.nextInt(150000), 2);
+            this.surfaces[i] = BigDecimal.valueOf(100 + random.nextInt(2000), 2);
+        }
+    }
+
+    @Benchmark
+    public BigDecimal getResult() {
+        final YieldSummary summary = new YieldSummary();
+        for (int i = 0; i < this.crops; i++) {
+            summary.add(this.quantities[i], this.surfaces[i]);
+        }
+        return summary.getValue(this.type);
+    }
+}
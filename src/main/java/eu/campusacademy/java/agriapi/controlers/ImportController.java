@@ -0,0 +1,65 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.controlers;
+
+import eu.campusacademy.java.agriapi.services.BulkLoadReport;
+import eu.campusacademy.java.agriapi.services.BulkLoadService;
+import eu.campusacademy.java.agriapi.services.FarmDeclaration;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * A data import controller.
+ * <p>
+ *     As all controllers it only calls the services, the load itself is done by BulkLoadService.
+ * </p>
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ * @see <a href="https://spring.io/guides/gs/spring-boot/">Introduction to Spring boot for more information</a>
+ */
+@RestController
+@RequestMapping("/agriapi/v1")
+@RequiredArgsConstructor
+public class ImportController {
+
+    private final BulkLoadService bulkLoadService;
+
+    /**
+     * Insert farms with their plots and crops.
+     * @param pFarms the farms declarations
+     * @return the load report, with the number of rows inserted by second
+     */
+    @PostMapping("/farms/bulk")
+    public BulkLoadReport load(final @RequestBody List<FarmDeclaration> pFarms) {
+        return bulkLoadService.load(pFarms);
+    }
+
+}
@@ -25,16 +25,37 @@
 //==============================================================================
 package eu.campusacademy.java.agriapi.controlers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import eu.campusacademy.java.agriapi.services.StatisticParams;
 import eu.campusacademy.java.agriapi.services.StatisticResult;
+import eu.campusacademy.java.agriapi.services.StatisticSeries;
 import eu.campusacademy.java.agriapi.services.StatsService;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.web.servlet.error.ErrorAttributes;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.RequestDispatcher;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 
 /**
  * A statistics controller.
@@ -47,6 +68,8 @@ import java.util.List;
  *         We specify a version what is considered a good practice.</li>
  *         <li>As a controller this class does not contain a business code or management rules.
  *         Its role is to call the service(s) and if necessary check the input parameters / transform the results</li>
+ *         <li>@Timed adds a percentile histogram to the http.server.requests timer of the endpoints of this controller,
+ *         the steps of a request are timed by the service, see StatsMetrics.</li>
  *     </ul>
  * </p>
  *
@@ -57,18 +80,130 @@ import java.util.List;
 @RestController
 @RequestMapping("/agriapi/v1")
 @RequiredArgsConstructor
+@Timed(histogram = true)
 public class StatsController {
 
+    /**
+     * Newline delimited JSON media type, one JSON document by line.
+     */
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
     private final StatsService statsService;
+    private final ObjectMapper objectMapper;
+    private final ErrorAttributes errorAttributes;
 
     /**
      * Obtain statistics.
+     * <p>
+     *     A CompletableFuture is returned so, when agriapi.stats.async.enabled is true, Spring MVC releases the
+     *     web server thread and writes the response once the future is completed by an other thread.
+     * </p>
      * @param pParams statistics query params
      * @return statistics
      */
     @GetMapping("/stats")
-    public List<StatisticResult> getStats(final @RequestBody StatisticParams pParams) {
-        return statsService.getStats(pParams);
+    public CompletableFuture<List<StatisticResult>> getStats(final @RequestBody StatisticParams pParams) {
+        return statsService.getStatsAsync(pParams);
+    }
+
+    /**
+     * Obtain time series of statistics, one by variety, for a list or a range of years.
+     * @param pParams statistics query params
+     * @return statistics series
+     */
+    @GetMapping("/stats/series")
+    public List<StatisticSeries> getSeries(final @RequestBody StatisticParams pParams) {
+        return statsService.getSeries(pParams);
+    }
+
+    /**
+     * Obtain the statistics of a batch of requests, planned together.
+     * <p>
+     *     POST is used since the batch is a body too large for a query and a GET with a body is not cached anyway.
+     * </p>
+     * @param pBatch statistics query params of each request
+     * @return statistics by index of request in the batch
+     */
+    @PostMapping("/stats/batch")
+    public Map<Integer, List<StatisticResult>> getBatch(final @RequestBody List<StatisticParams> pBatch) {
+        return statsService.getBatch(pBatch);
+    }
+
+    /**
+     * Obtain statistics by variety and by location, one result for each requested city, department or region.
+     * @param pParams statistics query params
+     * @return statistics by variety and location
+     */
+    @GetMapping("/stats/breakdown")
+    public List<StatisticResult> getBreakdown(final @RequestBody StatisticParams pParams) {
+        return statsService.getBreakdown(pParams);
+    }
+
+    /**
+     * Obtain statistics as a stream of newline delimited JSON.
+     * <p>
+     *     This method is used instead of getStats when the client accepts "application/x-ndjson".
+     *     Each result is written and flushed as soon as it is computed so the memory used does not depend
+     *     on the size of the response. The body is written by an other thread, the one of Spring MVC async support.
+     *     The request is checked before, by the calling thread, so an invalid one is rejected as by getStats
+     *     instead of failing after the response has been started, with the same JSON error, see invalid.
+     * </p>
+     * @param pParams statistics query params
+     * @return statistics, one by line
+     */
+    @GetMapping(value = "/stats", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamStats(final @RequestBody StatisticParams pParams) {
+        final StatsService.StatsStream stream = statsService.prepareStream(pParams);
+        final StreamingResponseBody body = out -> stream.forEach(result -> this.write(out, result));
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE)).body(body);
+    }
+
+    /**
+     * Answer a 503 status to an asynchronous request rejected or not computed in time because the server is busy.
+     * @param pException the rejection or timeout
+     * @return the error message
+     */
+    @ExceptionHandler({RejectedExecutionException.class, TimeoutException.class})
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public String busy(final Exception pException) {
+        return "Statistics server is busy, please retry later";
+    }
+
+    /**
+     * Answer an invalid request with the error Spring Boot answers to the JSON endpoints.
+     * <p>
+     *     Without this handler the error is rendered by the Spring Boot error controller, which only writes JSON:
+     *     a request accepting only "application/x-ndjson" would get a 406 status instead of its error. The error
+     *     attributes are the ones of the error controller, with the same status, and the content type is set to JSON
+     *     so it is written whatever the accepted types, on the JSON and the streaming endpoints alike.
+     * </p>
+     * @param pException the validation error
+     * @param pRequest the request
+     * @return the error status and attributes, as JSON
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, Object>> invalid(final IllegalArgumentException pException, final HttpServletRequest pRequest) {
+        final HttpStatus status = HttpStatus.INTERNAL_SERVER_ERROR;
+        pRequest.setAttribute(RequestDispatcher.ERROR_STATUS_CODE, status.value());
+        pRequest.setAttribute(RequestDispatcher.ERROR_EXCEPTION, pException);
+        pRequest.setAttribute(RequestDispatcher.ERROR_REQUEST_URI, pRequest.getRequestURI());
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON)
+                .body(this.errorAttributes.getErrorAttributes(new ServletWebRequest(pRequest), false));
+    }
+
+    /**
+     * Write a result as a line of JSON and flush it.
+     * @param pOut the response output stream
+     * @param pResult the result
+     */
+    private void write(final OutputStream pOut, final StatisticResult pResult) {
+        try {
+            pOut.write(objectMapper.writeValueAsBytes(pResult));
+            pOut.write('\n');
+            pOut.flush();
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
 }
@@ -25,6 +25,7 @@
 //==============================================================================
 package eu.campusacademy.java.agriapi.data.domain;
 
+import eu.campusacademy.java.agriapi.data.converters.LocationConverter;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 
@@ -36,6 +37,7 @@ import javax.persistence.*;
  *     An entity is a class who is mapped to a table in a database.
  *     An entity has a unique id.
  *     We use JPA annotation like @Entity or @Table to indicate to Hibernate how to do the mapping.
+ *     Each location code is indexed, so the stats queries find the farms of cities, departments or regions directly.
  *     In this project we use Lombok to write less code with a fabulous set of annotation like @AllArgsConstructor
  * </p>
  *
@@ -44,7 +46,11 @@ import javax.persistence.*;
  * @see <a href="https://spring.io/guides/gs/accessing-data-jpa/">Acessing Data wit JPA</a>
  */
 @Entity
-@Table(name = "farms")
+@Table(name = "farms", indexes = {
+        @Index(name = "idx_farms_city", columnList = "cityId"),
+        @Index(name = "idx_farms_department", columnList = "departmentId"),
+        @Index(name = "idx_farms_region", columnList = "regionId")
+})
 @FieldDefaults(level=AccessLevel.PRIVATE)
 @NoArgsConstructor
 @AllArgsConstructor
@@ -53,9 +59,13 @@ public class Farm {
 
     /**
      * the farm generated unique id
+     * <p>
+     *     Read from the farms sequence, fifty ids at a time, as crops and plots ids.
+     * </p>
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "farms_seq")
+    @SequenceGenerator(name = "farms_seq", sequenceName = "farms_seq", allocationSize = 50)
     @Getter
     @Setter
     Long id;
@@ -69,7 +79,12 @@ public class Farm {
 
     /**
      * The city code of the farm
+     * <p>
+     *     Location columns hold the id of the code in the locations dictionary.
+     * </p>
      */
+    @Column(name = "cityId")
+    @Convert(converter = LocationConverter.class)
     @Getter
     @Setter
     String cityCode;
@@ -77,6 +92,8 @@ public class Farm {
     /**
      * The department code of the farm
      */
+    @Column(name = "departmentId")
+    @Convert(converter = LocationConverter.class)
     @Getter
     @Setter
     String departmentCode;
@@ -84,6 +101,8 @@ public class Farm {
     /**
      * The region code of the farm
      */
+    @Column(name = "regionId")
+    @Convert(converter = LocationConverter.class)
     @Getter
     @Setter
     String regionCode;
@@ -37,6 +37,7 @@ import java.math.BigDecimal;
  *     An entity is a class who is mapped to a table in a database.
  *     An entity has a unique id.
  *     We use JPA annotation like @Entity or @Table to indicate to Hibernate how to do the mapping.
+ *     The index on farm id is used to find the plots of a farm.
  *     In this project we use Lombok to write less code with a fabulous set of annotation like @AllArgsConstructor
  * </p>
  *
@@ -45,7 +46,9 @@ import java.math.BigDecimal;
  * @see <a href="https://spring.io/guides/gs/accessing-data-jpa/">Acessing Data wit JPA</a>
  */
 @Entity
-@Table(name = "plots")
+@Table(name = "plots", indexes = {
+        @Index(name = "idx_plots_farm", columnList = "farmId")
+})
 @FieldDefaults(level=AccessLevel.PRIVATE)
 @NoArgsConstructor
 @AllArgsConstructor
@@ -54,9 +57,13 @@ public class Plot {
 
     /**
      * The plot generated unique id
+     * <p>
+     *     Ids come from a sequence, allocated fifty at a time, so new plots can be inserted in batches.
+     * </p>
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "plots_seq")
+    @SequenceGenerator(name = "plots_seq", sequenceName = "plots_seq", allocationSize = 50)
     @Getter
     @Setter
     Long id;
@@ -0,0 +1,165 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.data.domain;
+
+import eu.campusacademy.java.agriapi.data.converters.LocationConverter;
+import eu.campusacademy.java.agriapi.data.converters.VarietyConverter;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import javax.persistence.*;
+
+/**
+ * A yield rollup entity
+ * <p>
+ *     A rollup holds the count, sum, minimum, maximum and quantile sketch of the crop yields of one variety,
+ *     for one year and one city, with the sums of quantities and surfaces of the weighted average.
+ *     Yields are in hundredths of quintal by hectare.
+ *     Rollups are partial aggregates at the lowest level only: each one also holds the department and the region
+ *     of its farms, and the rollup of a department or a region is the merge of the rollups of its cities.
+ *     Rollups are computed from crops, plots and farms and are never saved by the application itself,
+ *     see YieldRollupService.
+ * </p>
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ * @see <a href="https://spring.io/guides/gs/accessing-data-jpa/">Acessing Data wit JPA</a>
+ */
+@Entity
+@Table(name = "yield_rollups", indexes = {
+        @Index(name = "idx_yield_rollups_city", columnList = "cityId, year, varietyId"),
+        @Index(name = "idx_yield_rollups_department", columnList = "departmentId, year, varietyId"),
+        @Index(name = "idx_yield_rollups_region", columnList = "regionId, year, varietyId"),
+        @Index(name = "idx_yield_rollups_variety_year", columnList = "varietyId, year")
+})
+@FieldDefaults(level=AccessLevel.PRIVATE)
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString(callSuper = true)
+public class YieldRollup {
+
+    /**
+     * The rollup generated unique id
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Getter
+    @Setter
+    Long id;
+
+    /**
+     * The city code of the farms
+     */
+    @Column(name = "cityId")
+    @Convert(converter = LocationConverter.class)
+    @Getter
+    @Setter
+    String cityCode;
+
+    /**
+     * The department code of the farms
+     */
+    @Column(name = "departmentId")
+    @Convert(converter = LocationConverter.class)
+    @Getter
+    @Setter
+    String departmentCode;
+
+    /**
+     * The region code of the farms
+     */
+    @Column(name = "regionId")
+    @Convert(converter = LocationConverter.class)
+    @Getter
+    @Setter
+    String regionCode;
+
+    /**
+     * The variety
+     */
+    @Column(name = "varietyId")
+    @Convert(converter = VarietyConverter.class)
+    @Getter
+    @Setter
+    String variety;
+
+    /**
+     * The year
+     */
+    @Getter
+    @Setter
+    Integer year;
+
+    /**
+     * The number of crops
+     */
+    @Getter
+    @Setter
+    Long yieldCount;
+
+    /**
+     * The sum of crop yields
+     */
+    @Getter
+    @Setter
+    Long yieldSum;
+
+    /**
+     * The minimum crop yield
+     */
+    @Getter
+    @Setter
+    Long yieldMin;
+
+    /**
+     * The maximum crop yield
+     */
+    @Getter
+    @Setter
+    Long yieldMax;
+
+    /**
+     * The sum of crop quantities in hundredths of tonne
+     */
+    @Getter
+    @Setter
+    Long quantitySum;
+
+    /**
+     * The sum of plot surfaces in hundredths of hectare
+     */
+    @Getter
+    @Setter
+    Long surfaceSum;
+
+    /**
+     * The serialized quantile sketch of crop yields, see YieldSketch
+     */
+    @Column(length = 8192)
+    @Getter
+    @Setter
+    byte[] yieldSketch;
+
+}
@@ -0,0 +1,62 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.data.events;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * An event published each time an entity is inserted, updated or deleted.
+ * <p>
+ *     The event holds a copy of the entity before and after the change:
+ *     <ul>
+ *         <li>for an insert, before is null</li>
+ *         <li>for a delete, after is null</li>
+ *         <li>for an update, before may be null when the previous state is unknown</li>
+ *     </ul>
+ *     As copies, the entities of the event can be read after the end of the transaction.
+ * </p>
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ * @see <a href="https://docs.spring.io/spring/docs/current/spring-framework-reference/core.html#context-functionality-events">Spring application events</a>
+ */
+@FieldDefaults(level= AccessLevel.PRIVATE)
+@AllArgsConstructor
+@ToString
+public class EntityChangeEvent {
+
+    /**
+     * The entity before the change
+     */
+    @Getter
+    Object before;
+
+    /**
+     * The entity after the change
+     */
+    @Getter
+    Object after;
+}
@@ -0,0 +1,112 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.data.events;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.io.Serializable;
+
+/**
+ * Hibernate listener publishing an {@link EntityChangeEvent} for each insert, update or delete of an entity.
+ * <p>
+ *     Hibernate listeners give access to the state of the entity before an update, what JPA callbacks
+ *     like @PostUpdate don't. The events are published synchronously during the flush of the session,
+ *     so listeners which do database work must wait for the end of the transaction
+ *     (see @TransactionalEventListener or TransactionSynchronization).
+ * </p>
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ * @see <a href="https://docs.jboss.org/hibernate/orm/5.4/userguide/html_single/Hibernate_User_Guide.html#events-events">Hibernate events</a>
+ */
+@Component
+@RequiredArgsConstructor
+public class EntityChangePublisher implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final ApplicationEventPublisher applicationEventPublisher;
+
+    /**
+     * Register this listener in Hibernate.
+     */
+    @PostConstruct
+    public void register() {
+        final EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(final PostInsertEvent pEvent) {
+        this.applicationEventPublisher.publishEvent(new EntityChangeEvent(null,
+                this.copy(pEvent.getPersister(), pEvent.getId(), pEvent.getState(), pEvent.getSession())));
+    }
+
+    @Override
+    public void onPostUpdate(final PostUpdateEvent pEvent) {
+        this.applicationEventPublisher.publishEvent(new EntityChangeEvent(
+                this.copy(pEvent.getPersister(), pEvent.getId(), pEvent.getOldState(), pEvent.getSession()),
+                this.copy(pEvent.getPersister(), pEvent.getId(), pEvent.getState(), pEvent.getSession())));
+    }
+
+    @Override
+    public void onPostDelete(final PostDeleteEvent pEvent) {
+        this.applicationEventPublisher.publishEvent(new EntityChangeEvent(
+                this.copy(pEvent.getPersister(), pEvent.getId(), pEvent.getDeletedState(), pEvent.getSession()), null));
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(final EntityPersister pPersister) {
+        return false;
+    }
+
+    /**
+     * Create a detached copy of an entity from its state.
+     * @param pPersister the entity persister
+     * @param pId the entity id
+     * @param pState the entity state, may be null
+     * @param pSession the session
+     * @return the copy or <code>null</code> if the state is null
+     */
+    private Object copy(final EntityPersister pPersister, final Serializable pId, final Object[] pState, final SharedSessionContractImplementor pSession) {
+        Object result = null;
+        if (null != pState) {
+            result = pPersister.instantiate(pId, pSession);
+            pPersister.setPropertyValues(result, pState);
+        }
+        return result;
+    }
+}
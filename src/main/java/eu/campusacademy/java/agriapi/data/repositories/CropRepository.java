@@ -26,7 +26,8 @@
 package eu.campusacademy.java.agriapi.data.repositories;
 
 import eu.campusacademy.java.agriapi.data.domain.Crop;
-import eu.campusacademy.java.agriapi.services.CropInfos;
+import eu.campusacademy.java.agriapi.services.VarietyYear;
+import eu.campusacademy.java.agriapi.services.YieldAggregate;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import org.springframework.data.jpa.repository.Query;
@@ -50,55 +51,173 @@ import java.util.List;
  * @see <a href="https://spring.io/guides/gs/accessing-data-jpa/">Acessing Data wit JPA</a>
  */
 @Repository
-public interface CropRepository extends JpaRepository<Crop, Long> {
+public interface CropRepository extends JpaRepository<Crop, Long>, CropRepositoryCustom {
 
     /**
-     * Find and return all crops information for a variety, a list of cities and a year.
-     * @param pVariety the variety.
-     * @param pCities the list of cities.
-     * @param pYear the year.
-     * @return a list of crops information.
+     * SQL expression of a crop yield in hundredths of quintal by hectare.
+     * <p>
+     *     The yield is rounded up like in Java with <code>quantity * 10 / surface</code> and RoundingMode.UP
+     *     for a quantity with two decimals.
+     * </p>
      */
-    @Query(nativeQuery = true, value="SELECT c.quantity, p.surface FROM crops c"
-            + " INNER JOIN plots p on c.plot_id = p.id"
-            + " INNER JOIN farms f on p.farm_id = f.id"
-            + " WHERE c.variety = :pVariety"
-            + " AND f.city_code IN(:pCities)"
-            + " AND c.year = :pYear"
+    String YIELD = "CEILING(c.quantity * 1000 / p.surface)";
+
+    /**
+     * SQL aggregate columns and from clause of yield aggregates, to append to the grouping columns.
+     */
+    String YIELD_AGGREGATE_COLUMNS = " COUNT(*) AS yieldCount,"
+            + " CAST(SUM(" + YIELD + ") AS BIGINT) AS yieldSum,"
+            + " CAST(MIN(" + YIELD + ") AS BIGINT) AS yieldMin,"
+            + " CAST(MAX(" + YIELD + ") AS BIGINT) AS yieldMax,"
+            + " CAST(SUM(c.quantity * 100) AS BIGINT) AS quantitySum,"
+            + " CAST(SUM(p.surface * 100) AS BIGINT) AS surfaceSum"
+            + " FROM crops c";
+
+    /**
+     * SQL select clause of yield aggregates by variety and year.
+     */
+    String YIELD_AGGREGATES = "SELECT c.variety_id AS varietyId, c.year AS year," + YIELD_AGGREGATE_COLUMNS;
+
+    /**
+     * SQL joins of crops with their plot and farm, to append to the from clause of crops.
+     */
+    String YIELD_JOINS = " INNER JOIN plots p on c.plot_id = p.id INNER JOIN farms f on p.farm_id = f.id";
+
+    /**
+     * SQL query of yield aggregates by variety and year for a list of varieties, a list of cities and a list of years.
+     */
+    String AGGREGATE_BY_CITIES = YIELD_AGGREGATES + YIELD_JOINS
+            + " WHERE c.variety_id IN(:pVarieties)"
+            + " AND f.city_id IN(:pCities)"
+            + " AND c.year IN(:pYears)"
+            + " GROUP BY c.variety_id, c.year";
+
+    /**
+     * SQL query of yield aggregates by variety and year for a list of varieties, a list of departments and a list of years.
+     */
+    String AGGREGATE_BY_DEPARTMENTS = YIELD_AGGREGATES + YIELD_JOINS
+            + " WHERE c.variety_id IN(:pVarieties)"
+            + " AND f.department_id IN(:pDepartments)"
+            + " AND c.year IN(:pYears)"
+            + " GROUP BY c.variety_id, c.year";
+
+    /**
+     * SQL query of yield aggregates by variety and year for a list of varieties, a list of regions and a list of years.
+     */
+    String AGGREGATE_BY_REGIONS = YIELD_AGGREGATES + YIELD_JOINS
+            + " WHERE c.variety_id IN(:pVarieties)"
+            + " AND f.region_id IN(:pRegions)"
+            + " AND c.year IN(:pYears)"
+            + " GROUP BY c.variety_id, c.year";
+
+    /**
+     * Aggregate and return yields by variety and year for a list of varieties, a list of cities and a list of years.
+     * @param pVarieties the list of varieties ids.
+     * @param pCities the list of cities ids.
+     * @param pYears the list of years.
+     * @return a list of yield aggregates, one by variety and year having crops.
+     */
+    @Query(nativeQuery = true, value=AGGREGATE_BY_CITIES)
+    List<YieldAggregate> aggregateByVarietiesAndCitiesAndYears(final List<Integer> pVarieties, final List<Integer> pCities, final List<Integer> pYears);
+
+    /**
+     * Aggregate and return yields by variety and year for a list of varieties, a list of departments and a list of years.
+     * @param pVarieties the list of varieties ids.
+     * @param pDepartments the list of departments ids.
+     * @param pYears the list of years.
+     * @return a list of yield aggregates, one by variety and year having crops.
+     */
+    @Query(nativeQuery = true, value=AGGREGATE_BY_DEPARTMENTS)
+    List<YieldAggregate> aggregateByVarietiesAndDepartmentsAndYears(final List<Integer> pVarieties, final List<Integer> pDepartments, final List<Integer> pYears);
+
+    /**
+     * Aggregate and return yields by variety and year for a list of varieties, a list of regions and a list of years.
+     * @param pVarieties the list of varieties ids.
+     * @param pRegions the list of regions ids.
+     * @param pYears the list of years.
+     * @return a list of yield aggregates, one by variety and year having crops.
+     */
+    @Query(nativeQuery = true, value=AGGREGATE_BY_REGIONS)
+    List<YieldAggregate> aggregateByVarietiesAndRegionsAndYears(final List<Integer> pVarieties, final List<Integer> pRegions, final List<Integer> pYears);
+
+    /**
+     * Aggregate and return yields by variety, year and city for a list of varieties, a list of cities and a list of years.
+     * @param pVarieties the list of varieties ids.
+     * @param pCities the list of cities ids.
+     * @param pYears the list of years.
+     * @return a list of yield aggregates, one by variety, year and city having crops.
+     */
+    @Query(nativeQuery = true, value="SELECT c.variety_id AS varietyId, c.year AS year, f.city_id AS locationId," + YIELD_AGGREGATE_COLUMNS
+            + YIELD_JOINS
+            + " WHERE c.variety_id IN(:pVarieties)"
+            + " AND f.city_id IN(:pCities)"
+            + " AND c.year IN(:pYears)"
+            + " GROUP BY c.variety_id, c.year, f.city_id"
+    )
+    List<YieldAggregate> breakdownByVarietiesAndCitiesAndYears(final List<Integer> pVarieties, final List<Integer> pCities, final List<Integer> pYears);
+
+    /**
+     * Aggregate and return yields by variety, year and department for a list of varieties, a list of departments and a list of years.
+     * @param pVarieties the list of varieties ids.
+     * @param pDepartments the list of departments ids.
+     * @param pYears the list of years.
+     * @return a list of yield aggregates, one by variety, year and department having crops.
+     */
+    @Query(nativeQuery = true, value="SELECT c.variety_id AS varietyId, c.year AS year, f.department_id AS locationId," + YIELD_AGGREGATE_COLUMNS
+            + YIELD_JOINS
+            + " WHERE c.variety_id IN(:pVarieties)"
+            + " AND f.department_id IN(:pDepartments)"
+            + " AND c.year IN(:pYears)"
+            + " GROUP BY c.variety_id, c.year, f.department_id"
+    )
+    List<YieldAggregate> breakdownByVarietiesAndDepartmentsAndYears(final List<Integer> pVarieties, final List<Integer> pDepartments, final List<Integer> pYears);
+
+    /**
+     * Aggregate and return yields by variety, year and region for a list of varieties, a list of regions and a list of years.
+     * @param pVarieties the list of varieties ids.
+     * @param pRegions the list of regions ids.
+     * @param pYears the list of years.
+     * @return a list of yield aggregates, one by variety, year and region having crops.
+     */
+    @Query(nativeQuery = true, value="SELECT c.variety_id AS varietyId, c.year AS year, f.region_id AS locationId," + YIELD_AGGREGATE_COLUMNS
+            + YIELD_JOINS
+            + " WHERE c.variety_id IN(:pVarieties)"
+            + " AND f.region_id IN(:pRegions)"
+            + " AND c.year IN(:pYears)"
+            + " GROUP BY c.variety_id, c.year, f.region_id"
     )
-    List<CropInfos> findAllByVarietyAndCitiesAndYear(final String pVariety, final List<String> pCities, final Integer pYear);
+    List<YieldAggregate> breakdownByVarietiesAndRegionsAndYears(final List<Integer> pVarieties, final List<Integer> pRegions, final List<Integer> pYears);
+
+    /**
+     * Find and return all distinct varieties and years of crops.
+     * <p>
+     *     This query is a JPQL query, not a native one, to be able to build VarietyYear instances.
+     * </p>
+     * @return a list of varieties and years.
+     */
+    @Query("SELECT DISTINCT new eu.campusacademy.java.agriapi.services.VarietyYear(c.variety, c.year) FROM Crop c")
+    List<VarietyYear> findAllVarietyYears();
 
     /**
-     * Find and return all yield information for à variety, a list of department and a year.
-     * @param pVariety the variety.
-     * @param pDepartments the list of departments.
-     * @param pYear the year.
-     * @return a list of crops information.
+     * Find and return the distinct varieties and years of the crops of a plot.
+     * @param pPlotId the plot id.
+     * @return a list of varieties and years.
      */
-    @Query(nativeQuery = true, value="SELECT c.quantity, p.surface FROM crops c"
-            + " INNER JOIN plots p on c.plot_id = p.id"
-            + " INNER JOIN farms f on p.farm_id = f.id"
-            + " WHERE c.variety = :pVariety"
-            + " AND f.department_code IN(:pDepartments)"
-            + " AND c.year = :pYear"
+    @Query("SELECT DISTINCT new eu.campusacademy.java.agriapi.services.VarietyYear(c.variety, c.year) FROM Crop c"
+            + " WHERE c.plotId = :pPlotId"
     )
-    List<CropInfos> findAllByVarietyAndDepartmentsAndYear(final String pVariety, final List<String> pDepartments, final Integer pYear);
+    List<VarietyYear> findVarietyYearsByPlot(final Long pPlotId);
 
     /**
-     * Find and return all yield information for à variety, a list of regions and a year.
-     * @param pVariety the variety.
-     * @param pRegions the list of regions.
-     * @param pYear the year.
-     * @return a list of crops information.
+     * Find and return the distinct varieties and years of the crops of a farm.
+     * @param pFarmId the farm id.
+     * @return a list of varieties and years.
      */
-    @Query(nativeQuery = true, value="SELECT c.quantity, p.surface FROM crops c"
-            + " INNER JOIN plots p on c.plot_id = p.id"
-            + " INNER JOIN farms f on p.farm_id = f.id"
-            + " WHERE c.variety = :pVariety"
-            + " AND f.region_code IN(:pRegions)"
-            + " AND c.year = :pYear"
+    @Query("SELECT DISTINCT new eu.campusacademy.java.agriapi.services.VarietyYear(c.variety, c.year) FROM Crop c, Plot p"
+            + " WHERE c.plotId = p.id"
+            + " AND p.farmId = :pFarmId"
     )
-    List<CropInfos> findAllByVarietyAndRegionsAndYear(final String pVariety, final List<String> pRegions, final Integer pYear);
+    List<VarietyYear> findVarietyYearsByFarm(final Long pFarmId);
 
 }
 
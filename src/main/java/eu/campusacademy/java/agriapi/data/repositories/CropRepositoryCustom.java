@@ -0,0 +1,115 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.data.repositories;
+
+import eu.campusacademy.java.agriapi.services.CropRowHandler;
+import eu.campusacademy.java.agriapi.services.LocationType;
+import eu.campusacademy.java.agriapi.services.YieldRowHandler;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Custom methods of the crop repository
+ * <p>
+ *    Methods which can't be written with a @Query annotation are declared in this interface, extended by
+ *    CropRepository, and implemented by CropRepositoryCustomImpl. Spring finds the implementation by its name.
+ * </p>
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ * @see <a href="https://docs.spring.io/spring-data/jpa/docs/current/reference/html/#repositories.custom-implementations">Custom Implementations for Spring Data Repositories</a>
+ */
+public interface CropRepositoryCustom {
+
+    /**
+     * Read all crops information for a list of varieties, a list of locations and a list of years and give them
+     * one by one to a handler.
+     * <p>
+     *     Rows are read with a database cursor, fetch size rows at a time, inside a read-only transaction,
+     *     so they are never all in memory.
+     * </p>
+     * @param pLocationType the location type.
+     * @param pVarieties the list of varieties ids.
+     * @param pLocations the list of cities, departments or regions ids.
+     * @param pYears the list of years.
+     * @param pFetchSize the number of rows fetched at a time.
+     * @param pHandler the handler of crops.
+     */
+    @Transactional(readOnly = true)
+    void forEachCrop(final LocationType pLocationType, final List<Integer> pVarieties, final List<Integer> pLocations, final List<Integer> pYears, final int pFetchSize, final CropRowHandler pHandler);
+
+    /**
+     * Read the yields of all crops, with their plot and farm, and give them one by one to a handler.
+     * @param pFetchSize the number of rows fetched at a time.
+     * @param pHandler the handler of yields.
+     */
+    @Transactional(readOnly = true)
+    void forEachYield(final int pFetchSize, final YieldRowHandler pHandler);
+
+    /**
+     * Read the yields of some crops and give them one by one to a handler.
+     * @param pCropIds the crops ids.
+     * @param pHandler the handler of yields.
+     */
+    @Transactional(readOnly = true)
+    void forEachYieldByCrops(final Collection<Long> pCropIds, final YieldRowHandler pHandler);
+
+    /**
+     * Read the yields of the crops of a variety and a year and give them one by one to a handler.
+     * @param pVarietyId the variety id.
+     * @param pYear the year.
+     * @param pHandler the handler of yields.
+     */
+    @Transactional(readOnly = true)
+    void forEachYieldByVarietyAndYear(final Integer pVarietyId, final Integer pYear, final YieldRowHandler pHandler);
+
+    /**
+     * Read the yields of the crops of a variety, a year and a city and give them one by one to a handler.
+     * @param pVarietyId the variety id.
+     * @param pYear the year.
+     * @param pCityId the city id.
+     * @param pHandler the handler of yields.
+     */
+    @Transactional(readOnly = true)
+    void forEachYieldByVarietyAndYearAndCity(final Integer pVarietyId, final Integer pYear, final Integer pCityId, final YieldRowHandler pHandler);
+
+    /**
+     * Read the yields of the crops of some plots and give them one by one to a handler.
+     * @param pPlotIds the plots ids.
+     * @param pHandler the handler of yields.
+     */
+    @Transactional(readOnly = true)
+    void forEachYieldByPlots(final Collection<Long> pPlotIds, final YieldRowHandler pHandler);
+
+    /**
+     * Read the yields of the crops of some farms and give them one by one to a handler.
+     * @param pFarmIds the farms ids.
+     * @param pHandler the handler of yields.
+     */
+    @Transactional(readOnly = true)
+    void forEachYieldByFarms(final Collection<Long> pFarmIds, final YieldRowHandler pHandler);
+}
@@ -0,0 +1,188 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.data.repositories;
+
+import eu.campusacademy.java.agriapi.services.CropRowHandler;
+import eu.campusacademy.java.agriapi.services.LocationType;
+import eu.campusacademy.java.agriapi.services.YieldRowHandler;
+import org.hibernate.annotations.QueryHints;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of the custom methods of the crop repository.
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ * @see <a href="https://docs.spring.io/spring-data/jpa/docs/current/reference/html/#repositories.custom-implementations">Custom Implementations for Spring Data Repositories</a>
+ */
+public class CropRepositoryCustomImpl implements CropRepositoryCustom {
+
+    /**
+     * SQL query of the yields of crops with their plot and farm, crops without yield are ignored.
+     */
+    private static final String YIELD_ROWS = "SELECT c.id, c.plot_id, p.farm_id, c.year, c.variety_id,"
+            + " f.city_id, f.department_id, f.region_id, CAST(" + CropRepository.YIELD + " AS BIGINT),"
+            + " CAST(c.quantity * 100 AS BIGINT), CAST(p.surface * 100 AS BIGINT) FROM crops c"
+            + " INNER JOIN plots p on c.plot_id = p.id"
+            + " INNER JOIN farms f on p.farm_id = f.id"
+            + " WHERE c.year IS NOT NULL AND c.variety_id IS NOT NULL AND c.quantity IS NOT NULL AND p.surface IS NOT NULL";
+
+    /**
+     * The maximum number of crops, plots or farms ids in a query.
+     */
+    private static final int MAX_IDS = 1000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public void forEachCrop(final LocationType pLocationType, final List<Integer> pVarieties, final List<Integer> pLocations, final List<Integer> pYears, final int pFetchSize, final CropRowHandler pHandler) {
+        final String column = "f." + this.getLocationColumn(pLocationType);
+        final String sql = "SELECT c.variety_id, c.year, " + column + ", c.quantity, p.surface FROM crops c"
+                + " INNER JOIN plots p on c.plot_id = p.id"
+                + " INNER JOIN farms f on p.farm_id = f.id"
+                + " WHERE c.variety_id IN(:pVarieties)"
+                + " AND " + column + " IN(:pLocations)"
+                + " AND c.year IN(:pYears)";
+        @SuppressWarnings("unchecked")
+        final Stream<Object[]> rows = this.entityManager.createNativeQuery(sql)
+                .setParameter("pVarieties", pVarieties)
+                .setParameter("pLocations", pLocations)
+                .setParameter("pYears", pYears)
+                .setHint(QueryHints.FETCH_SIZE, pFetchSize)
+                .setHint(QueryHints.READ_ONLY, true)
+                .getResultStream();
+        try (rows) {
+            rows.forEach(row -> pHandler.accept(((Number) row[0]).intValue(), ((Number) row[1]).intValue(),
+                    ((Number) row[2]).intValue(), (BigDecimal) row[3], (BigDecimal) row[4]));
+        }
+    }
+
+    @Override
+    public void forEachYield(final int pFetchSize, final YieldRowHandler pHandler) {
+        this.forEachYield(this.entityManager.createNativeQuery(YIELD_ROWS).setHint(QueryHints.FETCH_SIZE, pFetchSize), pHandler);
+    }
+
+    @Override
+    public void forEachYieldByCrops(final Collection<Long> pCropIds, final YieldRowHandler pHandler) {
+        this.forEachYieldByIds("c.id", pCropIds, pHandler);
+    }
+
+    @Override
+    public void forEachYieldByVarietyAndYear(final Integer pVarietyId, final Integer pYear, final YieldRowHandler pHandler) {
+        this.forEachYield(this.entityManager.createNativeQuery(YIELD_ROWS + " AND c.variety_id = :pVarietyId AND c.year = :pYear")
+                .setParameter("pVarietyId", pVarietyId)
+                .setParameter("pYear", pYear), pHandler);
+    }
+
+    @Override
+    public void forEachYieldByVarietyAndYearAndCity(final Integer pVarietyId, final Integer pYear, final Integer pCityId, final YieldRowHandler pHandler) {
+        this.forEachYield(this.entityManager.createNativeQuery(YIELD_ROWS + " AND c.variety_id = :pVarietyId AND c.year = :pYear AND f.city_id = :pCityId")
+                .setParameter("pVarietyId", pVarietyId)
+                .setParameter("pYear", pYear)
+                .setParameter("pCityId", pCityId), pHandler);
+    }
+
+    @Override
+    public void forEachYieldByPlots(final Collection<Long> pPlotIds, final YieldRowHandler pHandler) {
+        this.forEachYieldByIds("p.id", pPlotIds, pHandler);
+    }
+
+    @Override
+    public void forEachYieldByFarms(final Collection<Long> pFarmIds, final YieldRowHandler pHandler) {
+        this.forEachYieldByIds("f.id", pFarmIds, pHandler);
+    }
+
+    /**
+     * Read the yields of the crops whose crop, plot or farm id is in a list, with one query by chunk of ids.
+     * @param pColumn the id column, c.id, p.id or f.id
+     * @param pIds the ids
+     * @param pHandler the handler of yields
+     */
+    private void forEachYieldByIds(final String pColumn, final Collection<Long> pIds, final YieldRowHandler pHandler) {
+        final List<Long> ids = new ArrayList<>(pIds);
+        for (int i = 0; i < ids.size(); i += MAX_IDS) {
+            this.forEachYield(this.entityManager.createNativeQuery(YIELD_ROWS + " AND " + pColumn + " IN(:pIds)")
+                    .setParameter("pIds", ids.subList(i, Math.min(i + MAX_IDS, ids.size()))), pHandler);
+        }
+    }
+
+    /**
+     * Run a yields query and give its rows to a handler.
+     * @param pQuery the query
+     * @param pHandler the handler of yields
+     */
+    private void forEachYield(final Query pQuery, final YieldRowHandler pHandler) {
+        @SuppressWarnings("unchecked")
+        final Stream<Object[]> rows = pQuery.setHint(QueryHints.READ_ONLY, true).getResultStream();
+        try (rows) {
+            rows.forEach(row -> pHandler.accept(((Number) row[0]).longValue(), ((Number) row[1]).longValue(),
+                    ((Number) row[2]).longValue(), ((Number) row[3]).intValue(), ((Number) row[4]).intValue(), this.getId(row[5]),
+                    this.getId(row[6]), this.getId(row[7]), ((Number) row[8]).longValue(), ((Number) row[9]).longValue(),
+                    ((Number) row[10]).longValue()));
+        }
+    }
+
+    /**
+     * Return a dictionary id read from a row.
+     * @param pValue the column value
+     * @return the id, -1 for null
+     */
+    private int getId(final Object pValue) {
+        return null == pValue ? -1 : ((Number) pValue).intValue();
+    }
+
+    /**
+     * Return the farms column of a location type.
+     * @param pLocationType the location type
+     * @return the column name
+     */
+    private String getLocationColumn(final LocationType pLocationType) {
+        String result = null;
+        switch (pLocationType) {
+            case CITY: {
+                result = "city_id";
+                break;
+            }
+            case DEPARTMENT: {
+                result = "department_id";
+                break;
+            }
+            case REGION: {
+                result = "region_id";
+                break;
+            }
+        }
+        return result;
+    }
+}
@@ -26,10 +26,14 @@
 package eu.campusacademy.java.agriapi.data.repositories;
 
 import eu.campusacademy.java.agriapi.data.domain.Farm;
+import eu.campusacademy.java.agriapi.services.FarmCode;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 /**
  * The crop repository
  * <p>
@@ -46,4 +50,11 @@ import org.springframework.stereotype.Repository;
  */
 @Repository
 public interface FarmRepository extends JpaRepository<Farm, Long> {
+
+    /**
+     * Find and return the id and pacage code of all farms.
+     * @return a list of farm codes.
+     */
+    @Query("SELECT f.id AS id, f.pacageCode AS pacageCode FROM Farm f")
+    List<FarmCode> findAllCodes();
 }
@@ -0,0 +1,138 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.data.repositories;
+
+import eu.campusacademy.java.agriapi.data.domain.YieldRollup;
+import eu.campusacademy.java.agriapi.services.YieldAggregate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * The yield rollup repository
+ * <p>
+ *    Rollups are computed from crops, plots and farms by YieldRollupService and inserted with JDBC batches.
+ *    They are partial aggregates by city, the queries by level only differ by the location column they filter on
+ *    and return, partials are merged by the service.
+ *    Methods annotated with @Modifying update the database and must be called inside a transaction.
+ * </p>
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ * @see <a href="https://spring.io/guides/gs/accessing-data-jpa/">Acessing Data wit JPA</a>
+ */
+@Repository
+public interface YieldRollupRepository extends JpaRepository<YieldRollup, Long> {
+
+    /**
+     * SQL statement inserting a rollup, to run in JDBC batches.
+     */
+    String INSERT = "INSERT INTO yield_rollups"
+            + " (city_id, department_id, region_id, variety_id, year, yield_count, yield_sum, yield_min, yield_max,"
+            + " quantity_sum, surface_sum, yield_sketch)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * The columns of a partial aggregate, following the location id column.
+     * The sketch is read only when asked, it is by far the largest column.
+     */
+    String PARTIAL_COLUMNS = " r.variety_id AS varietyId, r.year AS year,"
+            + " r.yield_count AS yieldCount,"
+            + " r.yield_sum AS yieldSum,"
+            + " r.yield_min AS yieldMin,"
+            + " r.yield_max AS yieldMax,"
+            + " r.quantity_sum AS quantitySum,"
+            + " r.surface_sum AS surfaceSum,"
+            + " CASE WHEN :pSketch THEN r.yield_sketch END AS yieldSketch"
+            + " FROM yield_rollups r";
+
+    /**
+     * The filter on years and varieties of partial aggregates.
+     */
+    String PARTIAL_FILTER = " AND r.year IN(:pYears)"
+            + " AND r.variety_id IN(:pVarieties)";
+
+    /**
+     * Delete all rollups of a variety and a year.
+     * @param pVariety the variety id.
+     * @param pYear the year.
+     */
+    @Modifying
+    @Query(nativeQuery = true, value="DELETE FROM yield_rollups WHERE variety_id = :pVariety AND year = :pYear")
+    void deleteByVarietyAndYear(final Integer pVariety, final Integer pYear);
+
+    /**
+     * Delete the rollups of a variety, a year and a city.
+     * @param pVariety the variety id.
+     * @param pYear the year.
+     * @param pCity the city id.
+     */
+    @Modifying
+    @Query(nativeQuery = true, value="DELETE FROM yield_rollups WHERE variety_id = :pVariety AND year = :pYear AND city_id = :pCity")
+    void deleteByVarietyAndYearAndCity(final Integer pVariety, final Integer pYear, final Integer pCity);
+
+    /**
+     * Return the city partial aggregates of a list of varieties, a list of cities and a list of years.
+     * @param pVarieties the list of varieties ids.
+     * @param pLocations the list of cities ids.
+     * @param pYears the list of years.
+     * @param pSketch <code>true</code> to read the quantile sketches, <code>false</code> to leave them null.
+     * @return a list of yield aggregates, one by city partial, with the city as location.
+     */
+    @Query(nativeQuery = true, value="SELECT r.city_id AS locationId," + PARTIAL_COLUMNS
+            + " WHERE r.city_id IN(:pLocations)" + PARTIAL_FILTER
+    )
+    List<YieldAggregate> findPartialsByVarietiesAndCitiesAndYears(final List<Integer> pVarieties, final List<Integer> pLocations, final List<Integer> pYears, final boolean pSketch);
+
+    /**
+     * Return the city partial aggregates of a list of varieties, a list of departments and a list of years.
+     * @param pVarieties the list of varieties ids.
+     * @param pLocations the list of departments ids.
+     * @param pYears the list of years.
+     * @param pSketch <code>true</code> to read the quantile sketches, <code>false</code> to leave them null.
+     * @return a list of yield aggregates, one by city partial, with the department as location.
+     */
+    @Query(nativeQuery = true, value="SELECT r.department_id AS locationId," + PARTIAL_COLUMNS
+            + " WHERE r.department_id IN(:pLocations)" + PARTIAL_FILTER
+    )
+    List<YieldAggregate> findPartialsByVarietiesAndDepartmentsAndYears(final List<Integer> pVarieties, final List<Integer> pLocations, final List<Integer> pYears, final boolean pSketch);
+
+    /**
+     * Return the city partial aggregates of a list of varieties, a list of regions and a list of years.
+     * @param pVarieties the list of varieties ids.
+     * @param pLocations the list of regions ids.
+     * @param pYears the list of years.
+     * @param pSketch <code>true</code> to read the quantile sketches, <code>false</code> to leave them null.
+     * @return a list of yield aggregates, one by city partial, with the region as location.
+     */
+    @Query(nativeQuery = true, value="SELECT r.region_id AS locationId," + PARTIAL_COLUMNS
+            + " WHERE r.region_id IN(:pLocations)" + PARTIAL_FILTER
+    )
+    List<YieldAggregate> findPartialsByVarietiesAndRegionsAndYears(final List<Integer> pVarieties, final List<Integer> pLocations, final List<Integer> pYears, final boolean pSketch);
+
+}
@@ -0,0 +1,79 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.services;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Report of a bulk load.
+ * <p>
+ *     All fields are read-only.
+ * </p>
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ */
+@FieldDefaults(level= AccessLevel.PRIVATE)
+@AllArgsConstructor
+@ToString(callSuper = true)
+public class BulkLoadReport {
+
+    /**
+     * The number of inserted farms
+     */
+    @Getter
+    long farms;
+
+    /**
+     * The number of inserted plots
+     */
+    @Getter
+    long plots;
+
+    /**
+     * The number of inserted crops
+     */
+    @Getter
+    long crops;
+
+    /**
+     * The number of committed transactions
+     */
+    @Getter
+    long transactions;
+
+    /**
+     * The duration of the load in milliseconds
+     */
+    @Getter
+    long durationMillis;
+
+    /**
+     * The number of inserted rows, farms, plots and crops, by second
+     */
+    @Getter
+    long rowsPerSecond;
+}
@@ -0,0 +1,162 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.services;
+
+import eu.campusacademy.java.agriapi.data.domain.Crop;
+import eu.campusacademy.java.agriapi.data.domain.Farm;
+import eu.campusacademy.java.agriapi.data.domain.Plot;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The bulk load service.
+ * <p>
+ *     Farms, plots and crops are inserted with JDBC batches: entities ids are read from pooled sequences,
+ *     so Hibernate does not insert an entity to know its id and sends the inserts of a flush by batches
+ *     of hibernate.jdbc.batch_size statements. The persistence context is flushed and cleared regularly so it
+ *     never holds more than a few entities, and the declarations are committed by chunks of farms.
+ * </p>
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ * @see <a href="https://docs.jboss.org/hibernate/orm/5.4/userguide/html_single/Hibernate_User_Guide.html#batch">Hibernate batching</a>
+ */
+@RequiredArgsConstructor
+@Service
+public class BulkLoadService {
+
+    private final EntityManager entityManager;
+    private final PlatformTransactionManager transactionManager;
+    private final ImportProperties importProperties;
+
+    /**
+     * Insert farms with their plots and crops.
+     * @param pFarms the farms declarations
+     * @return the load report
+     */
+    public BulkLoadReport load(final List<FarmDeclaration> pFarms) {
+        final long start = System.nanoTime();
+        final TransactionTemplate transaction = new TransactionTemplate(this.transactionManager);
+        final Counters counters = new Counters();
+        int from = 0;
+        while (from < pFarms.size()) {
+            int to = from;
+            long rows = 0;
+            while (to < pFarms.size() && rows < this.importProperties.getTransactionSize()) {
+                rows += this.countRows(pFarms.get(to));
+                to++;
+            }
+            final List<FarmDeclaration> chunk = pFarms.subList(from, to);
+            transaction.executeWithoutResult(status -> this.insert(chunk, counters));
+            counters.transactions++;
+            from = to;
+        }
+        final long duration = System.nanoTime() - start;
+        final long rows = counters.farms + counters.plots + counters.crops;
+        return new BulkLoadReport(counters.farms, counters.plots, counters.crops, counters.transactions,
+                duration / 1_000_000, 0 == duration ? rows : rows * 1_000_000_000 / duration);
+    }
+
+    /**
+     * Insert farms with their plots and crops in the current transaction.
+     * @param pFarms the farms declarations
+     * @param pCounters the counters of inserted rows
+     */
+    private void insert(final List<FarmDeclaration> pFarms, final Counters pCounters) {
+        for (final FarmDeclaration farmDeclaration : pFarms) {
+            final Farm farm = new Farm(null, farmDeclaration.getPacageCode(), farmDeclaration.getCityCode(),
+                    farmDeclaration.getDepartmentCode(), farmDeclaration.getRegionCode());
+            this.persist(farm, pCounters);
+            pCounters.farms++;
+            for (final PlotDeclaration plotDeclaration : this.nonNull(farmDeclaration.getPlots())) {
+                final Plot plot = new Plot(null, farm.getId(), plotDeclaration.getSurface());
+                this.persist(plot, pCounters);
+                pCounters.plots++;
+                for (final CropDeclaration cropDeclaration : this.nonNull(plotDeclaration.getCrops())) {
+                    this.persist(new Crop(null, plot.getId(), cropDeclaration.getYear(), cropDeclaration.getVariety(),
+                            cropDeclaration.getQuantity()), pCounters);
+                    pCounters.crops++;
+                }
+            }
+        }
+        this.entityManager.flush();
+        this.entityManager.clear();
+    }
+
+    /**
+     * Persist an entity, and flush and clear the persistence context every flush size entities.
+     * @param pEntity the entity
+     * @param pCounters the counters of inserted rows
+     */
+    private void persist(final Object pEntity, final Counters pCounters) {
+        this.entityManager.persist(pEntity);
+        pCounters.pending++;
+        if (pCounters.pending >= this.importProperties.getFlushSize()) {
+            this.entityManager.flush();
+            this.entityManager.clear();
+            pCounters.pending = 0;
+        }
+    }
+
+    /**
+     * Return the number of rows of a farm declaration.
+     * @param pFarm the farm declaration
+     * @return the number of farms, plots and crops
+     */
+    private long countRows(final FarmDeclaration pFarm) {
+        long result = 1;
+        for (final PlotDeclaration plot : this.nonNull(pFarm.getPlots())) {
+            result += 1 + this.nonNull(plot.getCrops()).size();
+        }
+        return result;
+    }
+
+    /**
+     * Return a list, or an empty list instead of null.
+     * @param pList the list
+     * @param <T> the type of elements
+     * @return the list or an empty list
+     */
+    private <T> List<T> nonNull(final List<T> pList) {
+        return null == pList ? Collections.emptyList() : pList;
+    }
+
+    /**
+     * Counters of a bulk load.
+     */
+    private static class Counters {
+        long farms;
+        long plots;
+        long crops;
+        long transactions;
+        long pending;
+    }
+}
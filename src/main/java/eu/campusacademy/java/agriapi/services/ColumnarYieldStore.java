@@ -0,0 +1,607 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.services;
+
+import eu.campusacademy.java.agriapi.data.domain.Crop;
+import eu.campusacademy.java.agriapi.data.domain.Farm;
+import eu.campusacademy.java.agriapi.data.domain.Plot;
+import eu.campusacademy.java.agriapi.data.events.EntityChangeEvent;
+import eu.campusacademy.java.agriapi.data.repositories.CropRepository;
+import eu.campusacademy.java.agriapi.utils.IdMap;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory columnar store of crop yields, used by the COLUMNAR engine.
+ * <p>
+ *     Each crop joined with its plot and farm is a row, and each column is an array of primitives: year,
+ *     variety, city, department and region as integers, the ids of the varieties and locations dictionaries,
+ *     yield in hundredths of quintal by hectare, quantity and surface in hundredths as long. A bitmap of rows by variety and by year
+ *     lets a query only visit the rows of its varieties and year, then the location of each row is checked
+ *     in a table of the requested locations.
+ * </p>
+ * <p>
+ *     The store is loaded at startup when the engine is COLUMNAR. Then each time a crop, a plot or a farm
+ *     is saved or deleted, the rows of the affected crops are read again once the transaction is committed.
+ *     This is done by a thread of the store, not the writer one, and the changes of all transactions committed
+ *     meanwhile are read together, with one query by thousand crops, plots or farms. Cached results of the varieties
+ *     and years of the removed and read rows are then invalidated, since a result computed between the commit and
+ *     the update of the store may have been cached with outdated rows.
+ *     A deleted or moved row leaves a hole, all rows are loaded again when holes are more than live rows.
+ *     The memory used is logged after each load and published with the number of rows as Micrometer gauges.
+ * </p>
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ * @see <a href="https://en.wikipedia.org/wiki/Column-oriented_DBMS">Column-oriented DBMS</a>
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class ColumnarYieldStore implements MeterBinder, DisposableBean {
+
+    /**
+     * The first delay before reading again failed changes, in milliseconds.
+     */
+    private static final long RETRY_DELAY = 1000;
+
+    /**
+     * The maximum delay before reading again failed changes, in milliseconds.
+     */
+    private static final long MAX_RETRY_DELAY = 60000;
+
+    private final CropRepository cropRepository;
+    private final StatsProperties statsProperties;
+    private final PlatformTransactionManager transactionManager;
+    private final DictionaryService dictionaryService;
+    private final StatsCache statsCache;
+
+    /**
+     * Protects the columns, queries share the read lock and refreshes take the write lock.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * The columns, null until the store is loaded.
+     */
+    private volatile Columns columns;
+
+    /**
+     * The changes of committed transactions not yet read.
+     */
+    private final BlockingQueue<PendingChanges> queue = new LinkedBlockingQueue<>();
+
+    /**
+     * The thread reading changes, started once the store is loaded.
+     */
+    private Thread worker;
+
+    @Override
+    public void bindTo(final MeterRegistry pRegistry) {
+        Gauge.builder("stats.columnar.rows", this, store -> store.getStatus()[0])
+                .description("the number of crops rows in the columnar store")
+                .register(pRegistry);
+        Gauge.builder("stats.columnar.bytes", this, store -> store.getStatus()[1])
+                .description("the estimated memory used by the columnar store")
+                .baseUnit("bytes")
+                .register(pRegistry);
+    }
+
+    /**
+     * Check if the store can be used.
+     * @return <code>true</code> if the store is loaded, <code>false</code> otherwise
+     */
+    public boolean isReady() {
+        return null != this.columns;
+    }
+
+    /**
+     * Load the store at startup when the COLUMNAR engine is used, then start reading changes.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void initialize() {
+        if (StatsEngine.COLUMNAR == this.statsProperties.getEngine()) {
+            this.load();
+            if (null == this.worker) {
+                this.worker = new Thread(this::applyChanges, "columnar-yields");
+                this.worker.setDaemon(true);
+                this.worker.start();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (null != this.worker) {
+            this.worker.interrupt();
+        }
+    }
+
+    /**
+     * Load all rows from the database.
+     */
+    public synchronized void load() {
+        final Columns loaded = new Columns();
+        this.newTransaction().executeWithoutResult(status -> this.cropRepository.forEachYield(this.statsProperties.getFetchSize(),
+                (cropId, plotId, farmId, year, variety, city, department, region, yield, quantity, surface) ->
+                        loaded.put(new Row(cropId, plotId, farmId, year, variety, city, department, region, yield, quantity, surface))));
+        this.lock.writeLock().lock();
+        try {
+            this.columns = loaded;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+        final long[] status = this.getStatus();
+        log.info("Columnar yield store loaded: {} rows, {} KB, {} KB by million rows", status[0], status[1] / 1024,
+                0 == status[0] ? 0 : status[1] * 1_000_000 / status[0] / 1024);
+    }
+
+    /**
+     * Summarize yields by variety and year for a list of varieties, a list of locations and a list of years.
+     * <p>
+     *     Each variety bitmap is intersected with the bitmap of each year, the location mask is built only once.
+     *     When locations are not pooled, the yields of a row go to the summary of its location.
+     * </p>
+     * @param pLocationType the type of localisation
+     * @param pVarieties the list of varieties ids
+     * @param pLocations the list of locations ids
+     * @param pYears the list of years
+     * @param pByLocation <code>true</code> to keep one summary by location, <code>false</code> to pool locations
+     * @param pSketch <code>true</code> if the summaries must have a quantile sketch
+     * @return the yield summaries by variety id, year and, if asked, location id
+     */
+    public Map<YieldKey, YieldSummary> summarize(final LocationType pLocationType, final List<Integer> pVarieties, final List<Integer> pLocations, final List<Integer> pYears, final boolean pByLocation, final boolean pSketch) {
+        final Map<YieldKey, YieldSummary> result = new HashMap<>();
+        this.lock.readLock().lock();
+        try {
+            final Columns current = this.columns;
+            final int[] locations = current.getLocations(pLocationType);
+            final boolean[] selected = new boolean[1 + pLocations.stream().mapToInt(Integer::intValue).max().orElse(0)];
+            pLocations.forEach(location -> selected[location] = true);
+            for (final Integer year : new HashSet<>(pYears)) {
+                final BitSet yearRows = current.yearRows.get(year);
+                if (null != yearRows) {
+                    for (final Integer variety : new HashSet<>(pVarieties)) {
+                        if (variety < current.varietyRows.size()) {
+                            final BitSet rows = (BitSet) current.varietyRows.get(variety).clone();
+                            rows.and(yearRows);
+                            final YieldSummary pooled = pSketch ? YieldSummary.withSketch() : new YieldSummary();
+                            final YieldSummary[] byLocation = new YieldSummary[pByLocation ? selected.length : 0];
+                            for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+                                final int location = locations[row];
+                                if (location >= 0 && location < selected.length && selected[location]) {
+                                    if (!pByLocation) {
+                                        pooled.addYield(current.yields[row], current.quantities[row], current.surfaces[row]);
+                                    } else {
+                                        if (null == byLocation[location]) {
+                                            byLocation[location] = pSketch ? YieldSummary.withSketch() : new YieldSummary();
+                                        }
+                                        byLocation[location].addYield(current.yields[row], current.quantities[row], current.surfaces[row]);
+                                    }
+                                }
+                            }
+                            if (pooled.getCount() > 0) {
+                                result.put(new YieldKey(variety, year), pooled);
+                            }
+                            for (int location = 0; location < byLocation.length; location++) {
+                                if (null != byLocation[location]) {
+                                    result.put(new YieldKey(variety, year, location), byLocation[location]);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Note the crops, plots and farms changed by a transaction.
+     * @param pEvent the change
+     */
+    @EventListener
+    public void onEntityChange(final EntityChangeEvent pEvent) {
+        if (StatsEngine.COLUMNAR == this.statsProperties.getEngine()) {
+            final PendingChanges pending = this.getPendingChanges();
+            this.collect(pEvent.getBefore(), pending);
+            this.collect(pEvent.getAfter(), pending);
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                this.queue.add(pending);
+            }
+        }
+    }
+
+    /**
+     * Note the id of a crop, a plot or a farm.
+     * @param pEntity the crop, plot or farm, may be null
+     * @param pPending the changes of the current transaction
+     */
+    private void collect(final Object pEntity, final PendingChanges pPending) {
+        if (pEntity instanceof Crop) {
+            pPending.cropIds.add(((Crop) pEntity).getId());
+        } else if (pEntity instanceof Plot) {
+            pPending.plotIds.add(((Plot) pEntity).getId());
+        } else if (pEntity instanceof Farm) {
+            pPending.farmIds.add(((Farm) pEntity).getId());
+        }
+    }
+
+    /**
+     * Return the changes of the current transaction, registering their queuing after commit for a new transaction.
+     * @return the pending changes
+     */
+    private PendingChanges getPendingChanges() {
+        PendingChanges result = (PendingChanges) TransactionSynchronizationManager.getResource(this);
+        if (null == result) {
+            result = new PendingChanges();
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                final PendingChanges pending = result;
+                TransactionSynchronizationManager.bindResource(this, pending);
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                    @Override
+                    public int getOrder() {
+                        return Ordered.HIGHEST_PRECEDENCE;
+                    }
+
+                    @Override
+                    public void afterCommit() {
+                        TransactionSynchronizationManager.unbindResourceIfPossible(ColumnarYieldStore.this);
+                        queue.add(pending);
+                    }
+
+                    @Override
+                    public void afterCompletion(final int pStatus) {
+                        TransactionSynchronizationManager.unbindResourceIfPossible(ColumnarYieldStore.this);
+                    }
+                });
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Read queued changes until the worker thread is interrupted.
+     * <p>
+     *     The worker waits for a first transaction then merges all queued ones, rows being read again from the
+     *     database the order of transactions does not matter. When reading fails the changes are kept and read
+     *     again after a delay doubled at each failure, up to one minute, with the ones committed meanwhile.
+     * </p>
+     */
+    private void applyChanges() {
+        final List<PendingChanges> drained = new ArrayList<>();
+        PendingChanges merged = new PendingChanges();
+        long delay = RETRY_DELAY;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                if (merged.isEmpty()) {
+                    drained.add(this.queue.take());
+                }
+                this.queue.drainTo(drained);
+                for (final PendingChanges pending : drained) {
+                    merged.cropIds.addAll(pending.cropIds);
+                    merged.plotIds.addAll(pending.plotIds);
+                    merged.farmIds.addAll(pending.farmIds);
+                }
+                drained.clear();
+                this.refresh(merged);
+                merged = new PendingChanges();
+                delay = RETRY_DELAY;
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (final RuntimeException e) {
+                log.error("Columnar yield store update failed, retried in {} ms", delay, e);
+                try {
+                    Thread.sleep(delay);
+                } catch (final InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                delay = Math.min(MAX_RETRY_DELAY, 2 * delay);
+            }
+        }
+    }
+
+    /**
+     * Read again the rows of changed crops, plots and farms and replace them in the store,
+     * then invalidate the cached results of their varieties and years.
+     * <p>
+     *     The method is synchronized with load, so changes committed during a load are applied after it.
+     * </p>
+     * @param pPending the changes
+     */
+    private synchronized void refresh(final PendingChanges pPending) {
+        if (null != this.columns) {
+            final List<Row> rows = new ArrayList<>();
+            final YieldRowHandler handler = (cropId, plotId, farmId, year, variety, city, department, region, yield, quantity, surface) ->
+                    rows.add(new Row(cropId, plotId, farmId, year, variety, city, department, region, yield, quantity, surface));
+            this.newTransaction().executeWithoutResult(status -> {
+                this.cropRepository.forEachYieldByCrops(pPending.cropIds, handler);
+                this.cropRepository.forEachYieldByPlots(pPending.plotIds, handler);
+                this.cropRepository.forEachYieldByFarms(pPending.farmIds, handler);
+            });
+            final Columns current = this.columns;
+            final Set<List<Integer>> varietyYears = new HashSet<>();
+            this.lock.writeLock().lock();
+            try {
+                pPending.cropIds.forEach(cropId -> current.remove(cropId, varietyYears));
+                current.removeIf(current.plotIds, pPending.plotIds, varietyYears);
+                current.removeIf(current.farmIds, pPending.farmIds, varietyYears);
+                rows.forEach(current::put);
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+            rows.forEach(row -> varietyYears.add(List.of(row.variety, row.year)));
+            final List<VarietyYear> invalidated = new ArrayList<>();
+            varietyYears.forEach(varietyYear -> invalidated.add(new VarietyYear(this.dictionaryService.getVariety(varietyYear.get(0)), varietyYear.get(1))));
+            this.statsCache.invalidate(invalidated);
+            if (current.holes > current.size - current.holes) {
+                this.load();
+            }
+        }
+    }
+
+    /**
+     * Return the number of rows and the memory used.
+     * @return an array of the number of rows and the size in bytes
+     */
+    private long[] getStatus() {
+        final long[] result = new long[2];
+        this.lock.readLock().lock();
+        try {
+            final Columns current = this.columns;
+            if (null != current) {
+                result[0] = current.size - current.holes;
+                result[1] = current.getBytes();
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Create a template running code in a new read-only transaction.
+     * @return the transaction template
+     */
+    private TransactionTemplate newTransaction() {
+        final TransactionTemplate result = new TransactionTemplate(this.transactionManager);
+        result.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        result.setReadOnly(true);
+        return result;
+    }
+
+    /**
+     * The columns of the store.
+     */
+    private static class Columns {
+
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private int size;
+        private int holes;
+        private long[] cropIds = new long[INITIAL_CAPACITY];
+        private long[] plotIds = new long[INITIAL_CAPACITY];
+        private long[] farmIds = new long[INITIAL_CAPACITY];
+        private int[] years = new int[INITIAL_CAPACITY];
+        private int[] varieties = new int[INITIAL_CAPACITY];
+        private int[] cities = new int[INITIAL_CAPACITY];
+        private int[] departments = new int[INITIAL_CAPACITY];
+        private int[] regions = new int[INITIAL_CAPACITY];
+        private long[] yields = new long[INITIAL_CAPACITY];
+        private long[] quantities = new long[INITIAL_CAPACITY];
+        private long[] surfaces = new long[INITIAL_CAPACITY];
+        private final List<BitSet> varietyRows = new ArrayList<>();
+        private final Map<Integer, BitSet> yearRows = new HashMap<>();
+        private final IdMap rowsByCrop = new IdMap();
+
+        /**
+         * Add a row or replace the row of the same crop.
+         * @param pRow the row
+         */
+        private void put(final Row pRow) {
+            int row = (int) this.rowsByCrop.get(pRow.cropId);
+            if (IdMap.NOT_FOUND == row) {
+                if (this.size == this.cropIds.length) {
+                    this.grow();
+                }
+                row = this.size++;
+                this.rowsByCrop.put(pRow.cropId, row);
+            } else {
+                this.clearBits(row);
+            }
+            this.cropIds[row] = pRow.cropId;
+            this.plotIds[row] = pRow.plotId;
+            this.farmIds[row] = pRow.farmId;
+            this.years[row] = pRow.year;
+            this.varieties[row] = pRow.variety;
+            this.cities[row] = pRow.city;
+            this.departments[row] = pRow.department;
+            this.regions[row] = pRow.region;
+            this.yields[row] = pRow.yield;
+            this.quantities[row] = pRow.quantity;
+            this.surfaces[row] = pRow.surface;
+            while (this.varietyRows.size() <= this.varieties[row]) {
+                this.varietyRows.add(new BitSet());
+            }
+            this.varietyRows.get(this.varieties[row]).set(row);
+            this.yearRows.computeIfAbsent(pRow.year, year -> new BitSet()).set(row);
+        }
+
+        /**
+         * Remove the row of a crop, leaving a hole.
+         * @param pCropId the crop id
+         * @param pVarietyYears the variety and year ids of the removed rows, the one of the row is added
+         */
+        private void remove(final long pCropId, final Set<List<Integer>> pVarietyYears) {
+            final int row = (int) this.rowsByCrop.get(pCropId);
+            if (IdMap.NOT_FOUND != row) {
+                pVarietyYears.add(List.of(this.varieties[row], this.years[row]));
+                this.clearBits(row);
+                this.cropIds[row] = IdMap.NOT_FOUND;
+                this.rowsByCrop.put(pCropId, IdMap.NOT_FOUND);
+                this.holes++;
+            }
+        }
+
+        /**
+         * Remove the rows whose plot or farm is one of the given ids.
+         * @param pColumn the plots or farms ids column
+         * @param pIds the ids
+         * @param pVarietyYears the variety and year ids of the removed rows, the ones of the rows are added
+         */
+        private void removeIf(final long[] pColumn, final Set<Long> pIds, final Set<List<Integer>> pVarietyYears) {
+            if (!pIds.isEmpty()) {
+                for (int row = 0; row < this.size; row++) {
+                    if (IdMap.NOT_FOUND != this.cropIds[row] && pIds.contains(pColumn[row])) {
+                        this.remove(this.cropIds[row], pVarietyYears);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Clear the variety and year bits of a row.
+         * @param pRow the row
+         */
+        private void clearBits(final int pRow) {
+            this.varietyRows.get(this.varieties[pRow]).clear(pRow);
+            this.yearRows.get(this.years[pRow]).clear(pRow);
+        }
+
+        /**
+         * Grow the columns by half.
+         */
+        private void grow() {
+            final int capacity = this.cropIds.length + (this.cropIds.length >> 1);
+            this.cropIds = Arrays.copyOf(this.cropIds, capacity);
+            this.plotIds = Arrays.copyOf(this.plotIds, capacity);
+            this.farmIds = Arrays.copyOf(this.farmIds, capacity);
+            this.years = Arrays.copyOf(this.years, capacity);
+            this.varieties = Arrays.copyOf(this.varieties, capacity);
+            this.cities = Arrays.copyOf(this.cities, capacity);
+            this.departments = Arrays.copyOf(this.departments, capacity);
+            this.regions = Arrays.copyOf(this.regions, capacity);
+            this.yields = Arrays.copyOf(this.yields, capacity);
+            this.quantities = Arrays.copyOf(this.quantities, capacity);
+            this.surfaces = Arrays.copyOf(this.surfaces, capacity);
+        }
+
+        /**
+         * Return the column of a location type.
+         * @param pLocationType the location type
+         * @return the column of the location ids
+         */
+        private int[] getLocations(final LocationType pLocationType) {
+            int[] result = null;
+            switch (pLocationType) {
+                case CITY: {
+                    result = this.cities;
+                    break;
+                }
+                case DEPARTMENT: {
+                    result = this.departments;
+                    break;
+                }
+                case REGION: {
+                    result = this.regions;
+                    break;
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Return an estimation of the memory used by the columns, bitmaps and crops index.
+         * @return the size in bytes
+         */
+        private long getBytes() {
+            long result = (long) this.cropIds.length * (6 * Long.BYTES + 5 * Integer.BYTES);
+            for (final BitSet rows : this.varietyRows) {
+                result += rows.size() / Byte.SIZE;
+            }
+            for (final BitSet rows : this.yearRows.values()) {
+                result += rows.size() / Byte.SIZE;
+            }
+            result += this.rowsByCrop.getBytes();
+            return result;
+        }
+    }
+
+    /**
+     * A row read from the database.
+     */
+    @RequiredArgsConstructor
+    private static class Row {
+        private final long cropId;
+        private final long plotId;
+        private final long farmId;
+        private final int year;
+        private final int variety;
+        private final int city;
+        private final int department;
+        private final int region;
+        private final long yield;
+        private final long quantity;
+        private final long surface;
+    }
+
+    /**
+     * The crops, plots and farms changed by a transaction.
+     */
+    private static class PendingChanges {
+        private final Set<Long> cropIds = new HashSet<>();
+        private final Set<Long> plotIds = new HashSet<>();
+        private final Set<Long> farmIds = new HashSet<>();
+
+        /**
+         * Check if there is no change.
+         * @return <code>true</code> if no crop, plot nor farm changed, <code>false</code> otherwise
+         */
+        private boolean isEmpty() {
+            return this.cropIds.isEmpty() && this.plotIds.isEmpty() && this.farmIds.isEmpty();
+        }
+    }
+}
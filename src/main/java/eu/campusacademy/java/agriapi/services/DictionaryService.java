@@ -0,0 +1,379 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.services;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The dictionary service.
+ * <p>
+ *     Variety names and location codes are stored once in the varieties and locations tables and replaced
+ *     everywhere else by their integer id, so tables, indexes and comparisons are smaller.
+ *     This service translates names and codes to ids and back, with a cache of each dictionary loaded in full
+ *     once the application context is refreshed, or at first use if it comes sooner.
+ * </p>
+ * <p>
+ *     Unknown names and codes are inserted when an entity is saved, while Hibernate flushes, so the insert is
+ *     done on a connection of its own, out of the current transaction: the new id is visible to every
+ *     transaction at once and stays valid even if the current transaction is rolled back.
+ *     These connections are taken from a small pool of the dictionaries only, never from the application pool:
+ *     the thread flushing already holds a connection of the application pool, waiting for an other one could
+ *     exhaust it and deadlock, and would break the sizing of the pools of the statistics executors.
+ * </p>
+ * <p>
+ *     A request naming an unknown variety or location, a typo for instance, reads the table once to check that
+ *     an other instance of the application did not insert it, then the miss is remembered for a minute, so
+ *     repeated requests do not query the small pool of the dictionaries each time.
+ * </p>
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ * @see <a href="https://en.wikipedia.org/wiki/Dictionary_coder">Dictionary coder</a>
+ */
+@Service
+public class DictionaryService implements DisposableBean {
+
+    /**
+     * The maximum number of connections of the dictionaries pool.
+     */
+    private static final int POOL_SIZE = 2;
+
+    /**
+     * The maximum number of unknown values remembered by dictionary.
+     */
+    private static final int MAX_MISSES = 10000;
+
+    /**
+     * How long an unknown value is remembered, in nanoseconds.
+     */
+    private static final long MISS_TTL = TimeUnit.MINUTES.toNanos(1);
+
+    private final HikariDataSource dataSource;
+    private final Dictionary varieties;
+    private final Dictionary locations;
+
+    public DictionaryService(final DataSourceProperties pDataSourceProperties) {
+        this.dataSource = pDataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        this.dataSource.setPoolName("dictionaries");
+        this.dataSource.setMaximumPoolSize(POOL_SIZE);
+        this.dataSource.setMinimumIdle(0);
+        this.varieties = new Dictionary(this.dataSource, "varieties", "name");
+        this.locations = new Dictionary(this.dataSource, "locations", "code");
+    }
+
+    /**
+     * Load the dictionaries once the tables are created and before any request.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public void initialize() {
+        this.varieties.load();
+        this.locations.load();
+    }
+
+    @Override
+    public void destroy() {
+        this.dataSource.close();
+    }
+
+    /**
+     * Return the id of a variety, inserting it when it is unknown.
+     * @param pVariety the variety name
+     * @return the variety id
+     */
+    public int getVarietyId(final String pVariety) {
+        return this.varieties.getId(pVariety);
+    }
+
+    /**
+     * Return the name of a variety.
+     * @param pId the variety id
+     * @return the variety name
+     */
+    public String getVariety(final int pId) {
+        return this.varieties.getValue(pId);
+    }
+
+    /**
+     * Return the ids of known varieties.
+     * @param pVarieties the variety names
+     * @return the variety names by id, unknown varieties are ignored
+     */
+    public Map<Integer, String> findVarieties(final Collection<String> pVarieties) {
+        return this.varieties.find(pVarieties);
+    }
+
+    /**
+     * Return the id of a location, inserting it when it is unknown.
+     * @param pLocation the city, department or region code
+     * @return the location id
+     */
+    public int getLocationId(final String pLocation) {
+        return this.locations.getId(pLocation);
+    }
+
+    /**
+     * Return the code of a location.
+     * @param pId the location id
+     * @return the city, department or region code
+     */
+    public String getLocation(final int pId) {
+        return this.locations.getValue(pId);
+    }
+
+    /**
+     * Return the ids of known locations.
+     * @param pLocations the city, department or region codes
+     * @return the location codes by id, unknown locations are ignored
+     */
+    public Map<Integer, String> findLocations(final Collection<String> pLocations) {
+        return this.locations.find(pLocations);
+    }
+
+    /**
+     * A dictionary table and its cache.
+     */
+    private static class Dictionary {
+
+        private final DataSource dataSource;
+        private final String selectAll;
+        private final String selectId;
+        private final String selectValue;
+        private final String insert;
+        private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+        private final Map<Integer, String> values = new ConcurrentHashMap<>();
+
+        /**
+         * The expiration time of unknown values, from System.nanoTime().
+         */
+        private final Map<String, Long> misses = new ConcurrentHashMap<>();
+        private volatile boolean loaded;
+
+        Dictionary(final DataSource pDataSource, final String pTable, final String pColumn) {
+            this.dataSource = pDataSource;
+            this.selectAll = "SELECT id, " + pColumn + " FROM " + pTable;
+            this.selectId = "SELECT id FROM " + pTable + " WHERE " + pColumn + " = ?";
+            this.selectValue = "SELECT " + pColumn + " FROM " + pTable + " WHERE id = ?";
+            this.insert = "INSERT INTO " + pTable + " (" + pColumn + ") VALUES (?)";
+        }
+
+        /**
+         * Load the whole table in the cache, once.
+         * <p>
+         *     Afterwards a value missing from the cache is new, only rows inserted by an other instance of the
+         *     application are read one by one.
+         * </p>
+         */
+        synchronized void load() {
+            if (this.loaded) {
+                return;
+            }
+            try (Connection connection = this.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(this.selectAll)) {
+                while (resultSet.next()) {
+                    this.put(resultSet.getInt(1), resultSet.getString(2));
+                }
+            } catch (final SQLException e) {
+                throw new IllegalStateException("Dictionary read failed", e);
+            }
+            this.loaded = true;
+        }
+
+        /**
+         * Return the id of a value, inserting it when it is unknown.
+         * @param pValue the value
+         * @return the id
+         */
+        int getId(final String pValue) {
+            this.ensureLoaded();
+            Integer result = this.ids.get(pValue);
+            if (null == result) {
+                result = this.select(pValue);
+                if (null == result) {
+                    result = this.insert(pValue);
+                }
+                this.put(result, pValue);
+            }
+            return result;
+        }
+
+        /**
+         * Return the value of an id.
+         * @param pId the id
+         * @return the value
+         * @throws IllegalArgumentException if the id is unknown
+         */
+        String getValue(final int pId) {
+            this.ensureLoaded();
+            String result = this.values.get(pId);
+            if (null == result) {
+                try (Connection connection = this.dataSource.getConnection();
+                     PreparedStatement statement = connection.prepareStatement(this.selectValue)) {
+                    statement.setInt(1, pId);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        if (!resultSet.next()) {
+                            throw new IllegalArgumentException("Unknown dictionary id " + pId);
+                        }
+                        result = resultSet.getString(1);
+                    }
+                } catch (final SQLException e) {
+                    throw new IllegalStateException("Dictionary read failed", e);
+                }
+                this.put(pId, result);
+            }
+            return result;
+        }
+
+        /**
+         * Return the ids of known values, without inserting anything.
+         * <p>
+         *     A value missing from the cache is read from the table, unless it was already missing less than a minute ago.
+         * </p>
+         * @param pValues the values, may be null
+         * @return the values by id, in the order of the given values
+         */
+        Map<Integer, String> find(final Collection<String> pValues) {
+            this.ensureLoaded();
+            final Map<Integer, String> result = new LinkedHashMap<>();
+            for (final String value : null == pValues ? Collections.<String>emptyList() : pValues) {
+                Integer id = this.ids.get(value);
+                if (null == id && null != value && !this.isMissing(value)) {
+                    id = this.select(value);
+                    if (null != id) {
+                        this.put(id, value);
+                    } else {
+                        this.miss(value);
+                    }
+                }
+                if (null != id) {
+                    result.put(id, value);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Load the table if it is not loaded yet.
+         */
+        private void ensureLoaded() {
+            if (!this.loaded) {
+                this.load();
+            }
+        }
+
+        /**
+         * Cache an id and its value.
+         * @param pId the id
+         * @param pValue the value
+         */
+        private void put(final Integer pId, final String pValue) {
+            this.ids.put(pValue, pId);
+            this.values.put(pId, pValue);
+            this.misses.remove(pValue);
+        }
+
+        /**
+         * Check if a value was found unknown less than a minute ago.
+         * @param pValue the value
+         * @return <code>true</code> if the value is known to be missing
+         */
+        private boolean isMissing(final String pValue) {
+            final Long expiration = this.misses.get(pValue);
+            if (null != expiration && expiration - System.nanoTime() < 0) {
+                this.misses.remove(pValue, expiration);
+                return false;
+            }
+            return null != expiration;
+        }
+
+        /**
+         * Remember an unknown value, forgetting all of them when there are too many.
+         * @param pValue the value
+         */
+        private void miss(final String pValue) {
+            if (this.misses.size() >= MAX_MISSES) {
+                this.misses.clear();
+            }
+            this.misses.put(pValue, System.nanoTime() + MISS_TTL);
+        }
+
+        /**
+         * Read the id of a value.
+         * @param pValue the value
+         * @return the id, null if the value is unknown
+         */
+        private Integer select(final String pValue) {
+            try (Connection connection = this.dataSource.getConnection();
+                 PreparedStatement statement = connection.prepareStatement(this.selectId)) {
+                statement.setString(1, pValue);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    return resultSet.next() ? resultSet.getInt(1) : null;
+                }
+            } catch (final SQLException e) {
+                throw new IllegalStateException("Dictionary read failed", e);
+            }
+        }
+
+        /**
+         * Insert a value on a new connection and return its id.
+         * <p>
+         *     When an other thread inserts the same value first, the id of its row is returned.
+         * </p>
+         * @param pValue the value
+         * @return the id
+         */
+        private int insert(final String pValue) {
+            try (Connection connection = this.dataSource.getConnection();
+                 PreparedStatement statement = connection.prepareStatement(this.insert, Statement.RETURN_GENERATED_KEYS)) {
+                connection.setAutoCommit(true);
+                statement.setString(1, pValue);
+                statement.executeUpdate();
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    keys.next();
+                    return keys.getInt(1);
+                }
+            } catch (final SQLIntegrityConstraintViolationException e) {
+                final Integer result = this.select(pValue);
+                if (null == result) {
+                    throw new IllegalStateException("Dictionary insert failed", e);
+                }
+                return result;
+            } catch (final SQLException e) {
+                throw new IllegalStateException("Dictionary insert failed", e);
+            }
+        }
+    }
+}
@@ -25,23 +25,21 @@
 //==============================================================================
 package eu.campusacademy.java.agriapi.services;
 
-import java.math.BigDecimal;
-
 /**
- * This interface is used to store information returned by stats SQL query.
+ * This interface is used to store the id and pacage code of a farm.
  *
  * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
  * @see <a href="https://docs.spring.io/spring-data/jpa/docs/current/reference/html/#reference">Interface based projections information</a>
  */
-public interface CropInfos {
+public interface FarmCode {
 
     /**
-     * @return yield quantity in tonne
+     * @return the farm id
      */
-    BigDecimal getQuantity();
+    Long getId();
 
     /**
-     * @return plot surface in hectare
+     * @return the farm pacage code
      */
-    BigDecimal getSurface();
+    String getPacageCode();
 }
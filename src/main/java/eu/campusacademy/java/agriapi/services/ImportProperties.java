@@ -0,0 +1,86 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.services;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Data import configuration.
+ * <p>
+ *     Values are read from application.properties with the prefix "agriapi.import".
+ * </p>
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ * @see <a href="https://docs.spring.io/spring-boot/docs/current/reference/html/spring-boot-features.html#boot-features-external-config-typesafe-configuration-properties">Type-safe Configuration Properties</a>
+ */
+@Component
+@ConfigurationProperties(prefix = "agriapi.import")
+@FieldDefaults(level= AccessLevel.PRIVATE)
+@ToString
+public class ImportProperties {
+
+    /**
+     * The number of entities persisted before the persistence context is flushed and cleared,
+     * and the number of CSV lines imported by transaction.
+     * <p>
+     *     It should be a multiple of hibernate.jdbc.batch_size.
+     * </p>
+     */
+    @Getter
+    @Setter
+    int flushSize = 1000;
+
+    /**
+     * The number of rows inserted by transaction, a farm and its plots and crops are never split.
+     */
+    @Getter
+    @Setter
+    int transactionSize = 50000;
+
+    /**
+     * The directory of the CSV files imported at startup, nothing is imported when it is not set.
+     */
+    @Getter
+    @Setter
+    String csvDirectory;
+
+    /**
+     * The field separator of the CSV files.
+     */
+    @Getter
+    @Setter
+    char csvSeparator = ';';
+
+    /**
+     * The size of the CSV read buffer in bytes, the maximum length of a line.
+     */
+    @Getter
+    @Setter
+    int csvBufferSize = 1024 * 1024;
+}
@@ -0,0 +1,116 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.services;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.*;
+
+/**
+ * The normalized key of a statistics request.
+ * <p>
+ *     Varieties and locations are sorted and without duplicate so two requests asking the same thing
+ *     in a different order have equal keys. Types are also without order but the headline type, the first
+ *     requested one whose value is the one of the result, is part of the key.
+ *     Please note that all field are read-only and that equals and hashCode are generated by Lombok.
+ * </p>
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ */
+@FieldDefaults(level= AccessLevel.PRIVATE, makeFinal = true)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@EqualsAndHashCode
+@ToString
+public class StatisticKey {
+
+    /**
+     * The headline type, the first requested one
+     */
+    @Getter
+    StatisticType type;
+
+    /**
+     * The statistic types
+     */
+    @Getter
+    Set<StatisticType> types;
+
+    /**
+     * The year
+     */
+    @Getter
+    Integer year;
+
+    /**
+     * The sorted list of varieties
+     */
+    @Getter
+    List<String> varieties;
+
+    /**
+     * The location type
+     */
+    @Getter
+    LocationType locationType;
+
+    /**
+     * The sorted list of locations
+     */
+    @Getter
+    List<String> locations;
+
+    /**
+     * Build the key of a request.
+     * @param pParams request params
+     * @param pTypes the statistic types, in the order of the request
+     * @param pLocationType the type of localisation
+     * @param pLocations the list of locations
+     * @return the key
+     * @exception IllegalArgumentException if there is no variety or if a variety or a location is null
+     */
+    public static StatisticKey of(final StatisticParams pParams, final Set<StatisticType> pTypes, final LocationType pLocationType, final List<String> pLocations) throws IllegalArgumentException {
+        if (null == pParams.getVarieties()) {
+            throw new IllegalArgumentException("No variety");
+        }
+        if (pParams.getVarieties().stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("Null variety");
+        }
+        if (pLocations.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("Null location");
+        }
+        return new StatisticKey(pTypes.iterator().next(), Collections.unmodifiableSet(EnumSet.copyOf(pTypes)), pParams.getYear(), sorted(pParams.getVarieties()), pLocationType, sorted(pLocations));
+    }
+
+    /**
+     * Return a sorted copy of a list without duplicate.
+     * @param pList the list, without null
+     * @return the sorted copy
+     */
+    private static List<String> sorted(final List<String> pList) {
+        return List.copyOf(new TreeSet<>(pList));
+    }
+}
@@ -48,6 +48,16 @@ public class StatisticParams {
     @Setter
     StatisticType type;
 
+    /**
+     * The expected types of statistic.
+     * <p>
+     *     When not null nor empty, all these statistics are computed in one pass and type is ignored.
+     * </p>
+     */
+    @Getter
+    @Setter
+    List<StatisticType> types;
+
     /**
      * The year.
      */
@@ -55,6 +65,33 @@ public class StatisticParams {
     @Setter
     Integer year;
 
+    /**
+     * The list of years of a time series.
+     * <p>
+     *     Only used by series requests, when not null nor empty fromYear and toYear are ignored.
+     * </p>
+     * @see StatsService#getSeries(StatisticParams) for business rules.
+     */
+    @Getter
+    @Setter
+    List<Integer> years;
+
+    /**
+     * The first year of a time series, included.
+     * @see StatsService#getSeries(StatisticParams) for business rules.
+     */
+    @Getter
+    @Setter
+    Integer fromYear;
+
+    /**
+     * The last year of a time series, included.
+     * @see StatsService#getSeries(StatisticParams) for business rules.
+     */
+    @Getter
+    @Setter
+    Integer toYear;
+
     /**
      * The list of varieties.
      * <p>
@@ -30,6 +30,7 @@ import lombok.experimental.FieldDefaults;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Statistic result for one variety, a location type, a list of location and one year.
@@ -46,7 +47,7 @@ import java.util.List;
 public class StatisticResult {
 
     /**
-     * The statistic type
+     * The statistic type, the first one when several types are expected
      */
     @Getter
     StatisticType statisticType;
@@ -64,9 +65,10 @@ public class StatisticResult {
     LocationType locationType;
 
     /**
-     * The list of location
+     * The list of location, as requested, so a cached result is copied with the locations of each request
      */
     @Getter
+    @With
     List<String> locations;
 
     /**
@@ -80,4 +82,16 @@ public class StatisticResult {
      */
     @Getter
     BigDecimal value;
+
+    /**
+     * The values of all expected statistic types
+     */
+    @Getter
+    Map<StatisticType, BigDecimal> values;
+
+    /**
+     * The number of crops used to compute the statistics
+     */
+    @Getter
+    Long count;
 }
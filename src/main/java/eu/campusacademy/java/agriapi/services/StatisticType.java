@@ -27,6 +27,12 @@ package eu.campusacademy.java.agriapi.services;
 
 /**
  * Enum of statistic type
+ * <p>
+ *     MEDIAN, P10 and P90 are the median, the 10th and the 90th percentile of yields. They are estimated
+ *     with a quantile sketch, see YieldSketch.
+ *     WEIGHTED_AVERAGE is the total quantity divided by the total surface, so a large plot weighs more than
+ *     a small one, unlike AVERAGE which is the mean of the yields of plots.
+ * </p>
  *
  * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
  */
@@ -34,4 +40,8 @@ public enum StatisticType {
     AVERAGE,
     MIN,
     MAX,
+    MEDIAN,
+    P10,
+    P90,
+    WEIGHTED_AVERAGE,
 }
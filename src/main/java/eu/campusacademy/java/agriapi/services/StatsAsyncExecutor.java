@@ -0,0 +1,133 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.services;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * The executor of asynchronous statistics requests.
+ * <p>
+ *     A web server thread which waits for JDBC calls can't serve an other request. When asynchronous requests
+ *     are enabled, the controller returns a CompletableFuture and the request is computed by a thread of this
+ *     executor, so the web server thread is released at once and the number of requests in progress is no longer
+ *     bounded by the size of its pool but by the configured maximum concurrency.
+ * </p>
+ * <p>
+ *     The executor is bounded twice, by its number of threads and by the capacity of its queue. A request beyond
+ *     both is not run by the caller, as StatsExecutor does, since that would block the web server thread again:
+ *     its future fails at once with a RejectedExecutionException, answered by a 503 status.
+ *     A request still waiting or running after the configured timeout fails with a TimeoutException and its task
+ *     is cancelled: removed from the queue if it is waiting, interrupted if it is running. The timeout must be
+ *     lower than the one of Servlet asynchronous requests, spring.mvc.async.request-timeout, so the request
+ *     is answered by a 503 status and its task cancelled before the web server gives up on it.
+ * </p>
+ * <p>
+ *     The number of threads is the configured maximum concurrency but never more than its share of the connection
+ *     pool, see StatsConnectionBudget, so the threads of both statistics executors never wait for a connection
+ *     held by an other one.
+ * </p>
+ * <p>
+ *     Java 13 has no virtual thread and a reactive stack would need a non-blocking driver Spring Data JPA doesn't have,
+ *     Servlet asynchronous requests are the nearest model available to this application.
+ * </p>
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ * @see <a href="https://docs.spring.io/spring/docs/5.2.x/spring-framework-reference/web.html#mvc-ann-async">Spring MVC asynchronous requests</a>
+ */
+@Component
+public class StatsAsyncExecutor implements DisposableBean {
+
+    private final StatsProperties statsProperties;
+    private final ExecutorService executor;
+
+    /**
+     * Create the executor.
+     * @param pStatsProperties the statistics configuration
+     * @param pStatsConnectionBudget the connections shared with StatsExecutor
+     */
+    public StatsAsyncExecutor(final StatsProperties pStatsProperties, final StatsConnectionBudget pStatsConnectionBudget) {
+        this.statsProperties = pStatsProperties;
+        final StatsProperties.Async async = pStatsProperties.getAsync();
+        final int threads = pStatsConnectionBudget.getAsyncThreads();
+        final AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, async.getQueueCapacity())),
+                runnable -> {
+                    final Thread thread = new Thread(runnable, "stats-async-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Return true if requests are computed asynchronously.
+     * @return true if asynchronous requests are enabled
+     */
+    public boolean isEnabled() {
+        return this.statsProperties.getAsync().isEnabled();
+    }
+
+    /**
+     * Compute a request by a thread of this executor.
+     * @param pRequest the request
+     * @param <T> the type of result
+     * @return the future result, failed with a RejectedExecutionException when the executor is full
+     * or a TimeoutException when the result is not computed before the configured timeout
+     */
+    public <T> CompletableFuture<T> supply(final Supplier<T> pRequest) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final Future<?> task;
+        try {
+            task = this.executor.submit(() -> {
+                try {
+                    result.complete(pRequest.get());
+                } catch (final RuntimeException | Error e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        result.orTimeout(this.statsProperties.getAsync().getTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((value, error) -> {
+                    if (error instanceof TimeoutException) {
+                        task.cancel(true);
+                    }
+                });
+        return result;
+    }
+
+    @Override
+    public void destroy() {
+        this.executor.shutdownNow();
+    }
+}
@@ -0,0 +1,441 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.services;
+
+import eu.campusacademy.java.agriapi.data.domain.Crop;
+import eu.campusacademy.java.agriapi.data.domain.Farm;
+import eu.campusacademy.java.agriapi.data.domain.Plot;
+import eu.campusacademy.java.agriapi.data.events.EntityChangeEvent;
+import eu.campusacademy.java.agriapi.data.repositories.FarmRepository;
+import eu.campusacademy.java.agriapi.data.repositories.PlotRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A bounded cache of statistics results.
+ * <p>
+ *     Results are cached by {@link StatisticKey} and by variety. An entry is evicted :
+ *     <ul>
+ *         <li>when the cache is full, the least recently used entry is evicted first</li>
+ *         <li>when its time to live is over</li>
+ *         <li>when a crop, a plot or a farm matching its year, one of its varieties and one of its locations
+ *         is saved or deleted, the changes of a transaction are invalidated together once it is committed</li>
+ *         <li>when the rollups of its year and one of its varieties are updated</li>
+ *     </ul>
+ *     Hits, misses, evictions and size are published as Micrometer meters like other caches
+ *     (cache.gets, cache.evictions, cache.size with the tag cache=stats).
+ * </p>
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ * @see <a href="https://docs.spring.io/spring-boot/docs/current/reference/html/production-ready-features.html#production-ready-metrics">Spring Boot metrics</a>
+ */
+@Component
+@RequiredArgsConstructor
+public class StatsCache implements MeterBinder {
+
+    private static final String CACHE_NAME = "stats";
+
+    /**
+     * The maximum number of ids in a query.
+     */
+    private static final int MAX_IDS = 1000;
+
+    private final StatsProperties statsProperties;
+    private final PlotRepository plotRepository;
+    private final FarmRepository farmRepository;
+
+    /**
+     * The cached entries, in access order so the eldest is the least recently used.
+     */
+    private final LinkedHashMap<StatisticKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Incremented by each invalidation, a result computed before an invalidation is never cached.
+     */
+    private long generation;
+
+    @Override
+    public void bindTo(final MeterRegistry pRegistry) {
+        FunctionCounter.builder("cache.gets", this.hits, AtomicLong::get)
+                .tags("cache", CACHE_NAME, "result", "hit")
+                .description("the number of times cache lookup methods have returned a cached value")
+                .register(pRegistry);
+        FunctionCounter.builder("cache.gets", this.misses, AtomicLong::get)
+                .tags("cache", CACHE_NAME, "result", "miss")
+                .description("the number of times cache lookup methods have returned an uncached value")
+                .register(pRegistry);
+        FunctionCounter.builder("cache.evictions", this.evictions, AtomicLong::get)
+                .tag("cache", CACHE_NAME)
+                .description("cache evictions")
+                .register(pRegistry);
+        Gauge.builder("cache.size", this, StatsCache::size)
+                .tag("cache", CACHE_NAME)
+                .description("the number of entries in this cache")
+                .register(pRegistry);
+    }
+
+    /**
+     * Return the cached results of a request.
+     * @param pKey the request key
+     * @return the results by variety or <code>null</code> if they are not cached
+     */
+    public synchronized Map<String, StatisticResult> get(final StatisticKey pKey) {
+        Map<String, StatisticResult> result = null;
+        if (this.statsProperties.getCache().isEnabled()) {
+            final Entry entry = this.entries.get(pKey);
+            if (null != entry && entry.expiration - System.nanoTime() < 0) {
+                this.entries.remove(pKey);
+                this.evictions.incrementAndGet();
+            } else if (null != entry) {
+                result = entry.results;
+            }
+            (null == result ? this.misses : this.hits).incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Return the current generation, to read before computing results to cache.
+     * @return the generation
+     */
+    public synchronized long getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * Cache the results of a request if no invalidation occurs since they are computed.
+     * @param pKey the request key
+     * @param pResults the results by variety
+     * @param pGeneration the generation read before computing the results
+     */
+    public synchronized void put(final StatisticKey pKey, final Map<String, StatisticResult> pResults, final long pGeneration) {
+        final StatsProperties.Cache config = this.statsProperties.getCache();
+        if (config.isEnabled() && pGeneration == this.generation) {
+            this.entries.put(pKey, new Entry(Collections.unmodifiableMap(pResults), System.nanoTime() + config.getTtl().toNanos()));
+            final Iterator<Entry> iterator = this.entries.values().iterator();
+            while (this.entries.size() > config.getMaxSize() && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                this.evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Return the number of cached requests.
+     * @return the number of entries
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Note a change of crop, plot or farm, to invalidate the entries it affects once the transaction is committed.
+     * <p>
+     *     The changes of a transaction are collected and invalidated together after the commit, with one query for
+     *     the plots of all changed crops and one for their farms, so a bulk load does not pay queries by row.
+     *     Without transaction the change is invalidated at once.
+     *     The rollups are updated later by an other thread, so entries of the affected varieties and years are
+     *     invalidated again once they are, see {@link #invalidate(Collection)}.
+     * </p>
+     * @param pEvent the change
+     */
+    @EventListener
+    public void onEntityChange(final EntityChangeEvent pEvent) {
+        final PendingChanges pending = this.getPendingChanges();
+        this.collect(pEvent.getBefore(), pending);
+        this.collect(pEvent.getAfter(), pending);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            this.invalidate(pending);
+        }
+    }
+
+    /**
+     * Invalidate the entries of varieties and years, whatever their locations.
+     * <p>
+     *     Called once the rollups of these varieties and years are updated, since a result computed between the commit
+     *     of a change and the update of the rollups may have been cached with outdated rollups.
+     *     The generation is always incremented, even when the cache is empty, since such a result may still
+     *     be computing and must not be cached either.
+     * </p>
+     * @param pVarietyYears the varieties and years
+     */
+    public synchronized void invalidate(final Collection<VarietyYear> pVarietyYears) {
+        final Set<VarietyYear> varietyYears = new HashSet<>(pVarietyYears);
+        this.invalidate(key -> key.getVarieties().stream().anyMatch(variety -> varietyYears.contains(new VarietyYear(variety, key.getYear()))));
+    }
+
+    /**
+     * Note the state of an entity, before or after a change.
+     * @param pEntity the crop, plot or farm, may be null
+     * @param pPending the changes of the current transaction
+     */
+    private void collect(final Object pEntity, final PendingChanges pPending) {
+        if (pEntity instanceof Crop) {
+            pPending.crops.add((Crop) pEntity);
+        } else if (pEntity instanceof Plot) {
+            pPending.plots.add((Plot) pEntity);
+        } else if (pEntity instanceof Farm) {
+            pPending.farms.add((Farm) pEntity);
+        }
+    }
+
+    /**
+     * Return the changes of the current transaction, registering their invalidation after commit for a new transaction.
+     * @return the pending changes
+     */
+    private PendingChanges getPendingChanges() {
+        PendingChanges result = (PendingChanges) TransactionSynchronizationManager.getResource(this);
+        if (null == result) {
+            result = new PendingChanges();
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                final PendingChanges pending = result;
+                TransactionSynchronizationManager.bindResource(this, pending);
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                    @Override
+                    public void afterCommit() {
+                        TransactionSynchronizationManager.unbindResourceIfPossible(StatsCache.this);
+                        invalidate(pending);
+                    }
+
+                    @Override
+                    public void afterCompletion(final int pStatus) {
+                        TransactionSynchronizationManager.unbindResourceIfPossible(StatsCache.this);
+                    }
+                });
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Invalidate the entries affected by the changes of a transaction.
+     * <p>
+     *     When the cache is empty only the generation is incremented, nothing has to be read. Otherwise the farms
+     *     of the changes are read, then the generation is incremented and the affected entries removed at once,
+     *     so an entry put while the farms are read is removed too.
+     * </p>
+     * @param pPending the changes
+     */
+    private void invalidate(final PendingChanges pPending) {
+        synchronized (this) {
+            if (this.entries.isEmpty()) {
+                this.generation++;
+                return;
+            }
+        }
+        final Set<Long> plotIds = new HashSet<>();
+        pPending.crops.forEach(crop -> Optional.ofNullable(crop.getPlotId()).ifPresent(plotIds::add));
+        final Map<Long, Plot> plots = new HashMap<>();
+        findAll(plotIds, ids -> this.plotRepository.findAllById(ids)).forEach(plot -> plots.put(plot.getId(), plot));
+        final Set<Long> farmIds = new HashSet<>();
+        plots.values().forEach(plot -> Optional.ofNullable(plot.getFarmId()).ifPresent(farmIds::add));
+        pPending.plots.forEach(plot -> Optional.ofNullable(plot.getFarmId()).ifPresent(farmIds::add));
+        final Map<Long, Farm> farms = new HashMap<>();
+        findAll(farmIds, ids -> this.farmRepository.findAllById(ids)).forEach(farm -> farms.put(farm.getId(), farm));
+        final Affected affected = new Affected();
+        for (final Crop crop : pPending.crops) {
+            final Farm farm = Optional.ofNullable(crop.getPlotId()).map(plots::get).map(Plot::getFarmId).map(farms::get).orElse(null);
+            affected.add(new VarietyYear(crop.getVariety(), crop.getYear()), farm);
+        }
+        pPending.plots.forEach(plot -> affected.add(null, Optional.ofNullable(plot.getFarmId()).map(farms::get).orElse(null)));
+        pPending.farms.forEach(farm -> affected.add(null, farm));
+        synchronized (this) {
+            this.invalidate(affected::matches);
+        }
+    }
+
+    /**
+     * Find entities by chunks of ids.
+     * @param pIds the ids
+     * @param pFinder the query finding the entities of a chunk of ids
+     * @param <T> the type of entity
+     * @return the entities found
+     */
+    static <T> List<T> findAll(final Collection<Long> pIds, final Function<List<Long>, List<T>> pFinder) {
+        final List<T> result = new ArrayList<>();
+        final List<Long> ids = new ArrayList<>(pIds);
+        for (int i = 0; i < ids.size(); i += MAX_IDS) {
+            result.addAll(pFinder.apply(ids.subList(i, Math.min(ids.size(), i + MAX_IDS))));
+        }
+        return result;
+    }
+
+    /**
+     * Increment the generation and remove the matching entries, must be called with the lock of the cache.
+     * @param pFilter the filter of entries to remove
+     */
+    private void invalidate(final Predicate<StatisticKey> pFilter) {
+        this.generation++;
+        final Iterator<StatisticKey> iterator = this.entries.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (pFilter.test(iterator.next())) {
+                iterator.remove();
+                this.evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Return the location of a farm for a location type.
+     * @param pFarm the farm
+     * @param pLocationType the location type
+     * @return the city, department or region code
+     */
+    private String getLocation(final Farm pFarm, final LocationType pLocationType) {
+        String result = null;
+        switch (pLocationType) {
+            case CITY: {
+                result = pFarm.getCityCode();
+                break;
+            }
+            case DEPARTMENT: {
+                result = pFarm.getDepartmentCode();
+                break;
+            }
+            case REGION: {
+                result = pFarm.getRegionCode();
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The states of the crops, plots and farms changed by a transaction.
+     */
+    private static class PendingChanges {
+        private final List<Crop> crops = new ArrayList<>();
+        private final List<Plot> plots = new ArrayList<>();
+        private final List<Farm> farms = new ArrayList<>();
+    }
+
+    /**
+     * The varieties, years and locations affected by the changes of a transaction.
+     */
+    private class Affected {
+
+        /**
+         * The locations of changed crops by variety and year, by location type, null for all locations.
+         */
+        private final Map<VarietyYear, Map<LocationType, Set<String>>> crops = new HashMap<>();
+
+        /**
+         * The locations of changed plots and farms, whatever the variety and the year, by location type.
+         */
+        private final Map<LocationType, Set<String>> locations = new EnumMap<>(LocationType.class);
+
+        /**
+         * <code>true</code> when a plot or a farm of unknown location is changed.
+         */
+        private boolean all;
+
+        /**
+         * Add a change.
+         * @param pVarietyYear the variety and the year of a crop, <code>null</code> for a plot or a farm
+         * @param pFarm the farm of the change or <code>null</code> if it is unknown
+         */
+        void add(final VarietyYear pVarietyYear, final Farm pFarm) {
+            if (null == pVarietyYear) {
+                if (null == pFarm) {
+                    this.all = true;
+                } else {
+                    this.addLocations(this.locations, pFarm);
+                }
+            } else if (null == pFarm) {
+                this.crops.put(pVarietyYear, null);
+            } else if (!this.crops.containsKey(pVarietyYear) || null != this.crops.get(pVarietyYear)) {
+                this.addLocations(this.crops.computeIfAbsent(pVarietyYear, varietyYear -> new EnumMap<>(LocationType.class)), pFarm);
+            }
+        }
+
+        /**
+         * Check if an entry is affected.
+         * @param pKey the key of the entry
+         * @return <code>true</code> if the entry must be removed
+         */
+        boolean matches(final StatisticKey pKey) {
+            if (this.all || this.intersects(this.locations, pKey)) {
+                return true;
+            }
+            for (final String variety : pKey.getVarieties()) {
+                final VarietyYear varietyYear = new VarietyYear(variety, pKey.getYear());
+                if (this.crops.containsKey(varietyYear)
+                        && (null == this.crops.get(varietyYear) || this.intersects(this.crops.get(varietyYear), pKey))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Add the locations of a farm.
+         * @param pLocations the locations by location type
+         * @param pFarm the farm
+         */
+        private void addLocations(final Map<LocationType, Set<String>> pLocations, final Farm pFarm) {
+            for (final LocationType locationType : LocationType.values()) {
+                pLocations.computeIfAbsent(locationType, type -> new HashSet<>()).add(getLocation(pFarm, locationType));
+            }
+        }
+
+        /**
+         * Check if an entry has one of some locations.
+         * @param pLocations the locations by location type
+         * @param pKey the key of the entry
+         * @return <code>true</code> if a location of the entry is one of the locations
+         */
+        private boolean intersects(final Map<LocationType, Set<String>> pLocations, final StatisticKey pKey) {
+            final Set<String> locations = pLocations.get(pKey.getLocationType());
+            return null != locations && pKey.getLocations().stream().anyMatch(locations::contains);
+        }
+    }
+
+    /**
+     * A cached entry.
+     */
+    @RequiredArgsConstructor
+    private static class Entry {
+        private final Map<String, StatisticResult> results;
+        private final long expiration;
+    }
+}
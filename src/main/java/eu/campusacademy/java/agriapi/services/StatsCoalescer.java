@@ -0,0 +1,169 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.services;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight coalescing of identical statistics requests.
+ * <p>
+ *     When several threads ask for the same key at the same time, only the first one, the leader, computes the
+ *     result. The others, the followers, wait for it and receive the same result, or the same exception.
+ *     Once the result is computed the key is forgotten: it is the job of StatsCache to keep results, this class
+ *     only shares the computations in progress.
+ * </p>
+ * <p>
+ *     A follower joins a computation only if it is of the current cache generation. A computation started before
+ *     an invalidation could read outdated data, so a request arriving after the invalidation starts a new one.
+ * </p>
+ * <p>
+ *     A follower waits for the result at most the timeout of asynchronous requests and can be interrupted, so a
+ *     follower whose asynchronous task is cancelled is released at once instead of waiting for the leader.
+ *     It then fails with a CompletionException caused by a TimeoutException or an InterruptedException.
+ * </p>
+ * <p>
+ *     Leaders and followers are counted by the stats.coalesce counter with the tag role=leader or role=follower,
+ *     the coalesce rate is followers / (leaders + followers). The stats.coalesce.inflight gauge is the number of
+ *     computations in progress.
+ * </p>
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ * @see <a href="https://pkg.go.dev/golang.org/x/sync/singleflight">The singleflight package of Go</a>
+ */
+@Component
+@RequiredArgsConstructor
+public class StatsCoalescer implements MeterBinder {
+
+    private final StatsProperties statsProperties;
+
+    /**
+     * The computations in progress by key.
+     */
+    private final ConcurrentMap<Object, Flight> flights = new ConcurrentHashMap<>();
+
+    private final AtomicLong leaders = new AtomicLong();
+    private final AtomicLong followers = new AtomicLong();
+
+    /**
+     * Called by each follower once it has joined a computation, used by tests to wait for followers.
+     */
+    private volatile Runnable followerListener = () -> { };
+
+    @Override
+    public void bindTo(final MeterRegistry pRegistry) {
+        FunctionCounter.builder("stats.coalesce", this.leaders, AtomicLong::get)
+                .tag("role", "leader")
+                .description("the number of requests which computed their result")
+                .register(pRegistry);
+        FunctionCounter.builder("stats.coalesce", this.followers, AtomicLong::get)
+                .tag("role", "follower")
+                .description("the number of requests which received the result of an identical request in progress")
+                .register(pRegistry);
+        Gauge.builder("stats.coalesce.inflight", this.flights, ConcurrentMap::size)
+                .description("the number of computations in progress")
+                .register(pRegistry);
+    }
+
+    /**
+     * Compute a result or wait for the same computation in progress.
+     * @param pKey the normalized key of the request
+     * @param pGeneration the cache generation read before computing the result
+     * @param pComputation the computation
+     * @param <T> the type of result
+     * @return the result
+     * @exception CompletionException if a follower is not given the result in time or is interrupted
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(final Object pKey, final long pGeneration, final Supplier<T> pComputation) {
+        if (!this.statsProperties.isCoalesce()) {
+            return pComputation.get();
+        }
+        final Flight flight = new Flight(pGeneration);
+        final Flight current = this.flights.compute(pKey,
+                (key, other) -> null == other || other.generation != pGeneration ? flight : other);
+        if (current != flight) {
+            this.followers.incrementAndGet();
+            this.followerListener.run();
+            try {
+                return (T) current.result.get(this.statsProperties.getAsync().getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            } catch (final ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw new CompletionException(e.getCause());
+            } catch (final TimeoutException e) {
+                throw new CompletionException(e);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+        }
+        this.leaders.incrementAndGet();
+        try {
+            final T result = pComputation.get();
+            flight.result.complete(result);
+            return result;
+        } catch (final RuntimeException | Error e) {
+            flight.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.flights.remove(pKey, flight);
+        }
+    }
+
+    /**
+     * Set the code called by each follower once it has joined a computation, before it waits for the result.
+     * @param pListener the listener
+     */
+    void setFollowerListener(final Runnable pListener) {
+        this.followerListener = pListener;
+    }
+
+    /**
+     * A computation in progress.
+     */
+    private static class Flight {
+
+        private final long generation;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        Flight(final long pGeneration) {
+            this.generation = pGeneration;
+        }
+    }
+}
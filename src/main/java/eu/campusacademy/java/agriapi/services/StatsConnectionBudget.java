@@ -0,0 +1,86 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.services;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * The connections shared by the threads of the statistics executors.
+ * <p>
+ *     Each running thread of StatsExecutor and StatsAsyncExecutor may hold a connection. Bounded apart by the size
+ *     of the connection pool, the two executors together could need twice the pool, so they share one budget:
+ *     the size of the pool minus one, the last connection being left to the web server threads and the writers.
+ * </p>
+ * <p>
+ *     When both parallel and asynchronous computations are enabled, the parallel threads take at most half of the
+ *     budget and the asynchronous threads the rest, otherwise the enabled executor may use the whole budget.
+ *     Each executor keeps at least one thread, even with a pool of two connections.
+ * </p>
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ * @see <a href="https://github.com/brettwooldridge/HikariCP/wiki/About-Pool-Sizing">About pool sizing</a>
+ */
+@Component
+public class StatsConnectionBudget {
+
+    private final int parallelThreads;
+    private final int asyncThreads;
+
+    /**
+     * Share the connection pool between the executors.
+     * @param pStatsProperties the statistics configuration
+     * @param pDataSource the data source, used to read the size of the connection pool
+     */
+    public StatsConnectionBudget(final StatsProperties pStatsProperties, final DataSource pDataSource) {
+        final StatsProperties.Parallel parallel = pStatsProperties.getParallel();
+        final StatsProperties.Async async = pStatsProperties.getAsync();
+        int budget = Integer.MAX_VALUE;
+        if (pDataSource instanceof HikariDataSource) {
+            budget = ((HikariDataSource) pDataSource).getMaximumPoolSize() - 1;
+        }
+        this.parallelThreads = Math.max(1, Math.min(parallel.getThreads(), async.isEnabled() ? budget / 2 : budget));
+        this.asyncThreads = Math.max(1, Math.min(async.getMaxConcurrency(), parallel.isEnabled() ? budget - this.parallelThreads : budget));
+    }
+
+    /**
+     * Return the number of threads of StatsExecutor.
+     * @return the number of threads
+     */
+    public int getParallelThreads() {
+        return this.parallelThreads;
+    }
+
+    /**
+     * Return the number of threads of StatsAsyncExecutor.
+     * @return the number of threads
+     */
+    public int getAsyncThreads() {
+        return this.asyncThreads;
+    }
+}
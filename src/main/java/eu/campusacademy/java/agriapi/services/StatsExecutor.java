@@ -0,0 +1,105 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.services;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded executor used to compute statistics concurrently.
+ * <p>
+ *     The number of threads is the configured one but never more than its share of the connection pool,
+ *     see StatsConnectionBudget, so requests which are not computed concurrently can still obtain a connection.
+ *     When the queue is full, the requesting thread runs the task itself.
+ * </p>
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ * @see <a href="https://docs.oracle.com/en/java/javase/13/docs/api/java.base/java/util/concurrent/ThreadPoolExecutor.html">ThreadPoolExecutor</a>
+ */
+@Component
+public class StatsExecutor implements DisposableBean {
+
+    private final StatsProperties statsProperties;
+    private final ExecutorService executor;
+
+    /**
+     * Create the executor.
+     * @param pStatsProperties the statistics configuration
+     * @param pStatsConnectionBudget the connections shared with StatsAsyncExecutor
+     */
+    public StatsExecutor(final StatsProperties pStatsProperties, final StatsConnectionBudget pStatsConnectionBudget) {
+        this.statsProperties = pStatsProperties;
+        final StatsProperties.Parallel parallel = pStatsProperties.getParallel();
+        final int threads = pStatsConnectionBudget.getParallelThreads();
+        final AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, parallel.getQueueCapacity())),
+                runnable -> {
+                    final Thread thread = new Thread(runnable, "stats-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Run tasks concurrently and return their results in the order of tasks.
+     * @param pTasks the tasks
+     * @param <T> the type of results
+     * @return the results
+     * @exception IllegalStateException if all tasks are not done before the configured timeout or are interrupted
+     */
+    public <T> List<T> invokeAll(final List<Callable<T>> pTasks) throws IllegalStateException {
+        final long timeout = this.statsProperties.getParallel().getTimeout().toMillis();
+        final List<T> result = new ArrayList<>(pTasks.size());
+        try {
+            for (final Future<T> future : this.executor.invokeAll(pTasks, timeout, TimeUnit.MILLISECONDS)) {
+                result.add(future.get());
+            }
+        } catch (final CancellationException e) {
+            throw new IllegalStateException("Statistics are not computed before the timeout of " + timeout + " ms", e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Statistics computation is interrupted", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return result;
+    }
+
+    @Override
+    public void destroy() {
+        this.executor.shutdownNow();
+    }
+}
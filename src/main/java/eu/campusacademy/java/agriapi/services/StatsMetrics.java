@@ -0,0 +1,194 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.services;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Micrometer meters of the statistics pipeline.
+ * <p>
+ *     Each step of a statistics request is timed, with a percentile histogram so latencies can be aggregated
+ *     by a monitoring system, and tagged by location type and headline statistic type so city, department and region
+ *     requests, or median and average ones, are told apart. A batch summarizing requests of several headline
+ *     types together is tagged with the type MIXED :
+ *     <ul>
+ *         <li>stats.requests, the duration of a service request, tagged by operation (stats, stream, series,
+ *         breakdown, batch), with stats.request.varieties the number of varieties by request</li>
+ *         <li>stats.queries, the duration of each query of an engine, tagged by query (aggregate, breakdown,
+ *         crops, rollup, columnar), with stats.query.rows the number of summaries it returned, whatever the engine,
+ *         and for the crops query stats.query.crops the number of crops it read</li>
+ *         <li>stats.calcul, the duration of the computation of all values of a request, tagged by operation</li>
+ *     </ul>
+ *     They are read with the actuator metrics endpoint, for instance <code>/actuator/metrics/stats.queries?tag=location:REGION</code>.
+ *     Meters are registered once by name and tags then kept, so recording a step does not build nor look up meters
+ *     in the registry.
+ * </p>
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ * @see <a href="https://micrometer.io/docs/concepts">Micrometer concepts</a>
+ */
+@Component
+@RequiredArgsConstructor
+public class StatsMetrics {
+
+    /**
+     * The type tag of a batch of requests of several headline types.
+     */
+    private static final String MIXED = "MIXED";
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * The registered timers by name and tags.
+     */
+    private final Map<List<String>, Timer> timers = new ConcurrentHashMap<>();
+
+    /**
+     * The registered distribution summaries by name and tags.
+     */
+    private final Map<List<String>, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+    /**
+     * Start timing a step.
+     * @return the sample to give to a record method once the step is done
+     */
+    public Timer.Sample start() {
+        return Timer.start(this.meterRegistry);
+    }
+
+    /**
+     * Record a statistics request.
+     * @param pSample the sample started with the request
+     * @param pOperation the operation name
+     * @param pLocationType the location type of the request
+     * @param pType the headline statistic type of the request, <code>null</code> for several types
+     * @param pVarieties the number of varieties of the request
+     */
+    public void recordRequest(final Timer.Sample pSample, final String pOperation, final LocationType pLocationType, final StatisticType pType, final int pVarieties) {
+        pSample.stop(this.timer("stats.requests", "the duration of statistics requests",
+                "operation", pOperation, "location", pLocationType.name(), "type", this.getTag(pType)));
+        this.summary("stats.request.varieties", "the number of varieties of statistics requests",
+                "operation", pOperation, "location", pLocationType.name(), "type", this.getTag(pType)).record(pVarieties);
+    }
+
+    /**
+     * Record a query of a statistics engine.
+     * @param pSample the sample started with the query
+     * @param pQuery the query name
+     * @param pLocationType the location type of the query
+     * @param pType the headline statistic type of the request, <code>null</code> for several types
+     * @param pSummaries the number of summaries returned
+     */
+    public void recordQuery(final Timer.Sample pSample, final String pQuery, final LocationType pLocationType, final StatisticType pType, final long pSummaries) {
+        pSample.stop(this.timer("stats.queries", "the duration of statistics queries",
+                "query", pQuery, "location", pLocationType.name(), "type", this.getTag(pType)));
+        this.summary("stats.query.rows", "the number of summaries returned by statistics queries",
+                "query", pQuery, "location", pLocationType.name()).record(pSummaries);
+    }
+
+    /**
+     * Record the number of crops read by a query summarizing them one by one.
+     * @param pLocationType the location type of the query
+     * @param pCrops the number of crops read
+     */
+    public void recordCrops(final LocationType pLocationType, final long pCrops) {
+        this.summary("stats.query.crops", "the number of crops read by statistics queries",
+                "location", pLocationType.name()).record(pCrops);
+    }
+
+    /**
+     * Record the computation of all values of the results of a request.
+     * @param pOperation the operation name
+     * @param pLocationType the location type of the request
+     * @param pType the headline statistic type of the request, <code>null</code> for several types
+     * @param pDuration the duration in nanoseconds
+     */
+    public void recordCalcul(final String pOperation, final LocationType pLocationType, final StatisticType pType, final long pDuration) {
+        this.timer("stats.calcul", "the duration of the computation of statistic values",
+                "operation", pOperation, "location", pLocationType.name(), "type", this.getTag(pType)).record(pDuration, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Return the type tag of a request.
+     * @param pType the headline statistic type, <code>null</code> for several types
+     * @return the tag value
+     */
+    private String getTag(final StatisticType pType) {
+        return null == pType ? MIXED : pType.name();
+    }
+
+    /**
+     * Return a timer with a percentile histogram, registering it the first time.
+     * @param pName the meter name
+     * @param pDescription the meter description
+     * @param pTags the tags, as key and value pairs
+     * @return the timer
+     */
+    private Timer timer(final String pName, final String pDescription, final String... pTags) {
+        return this.timers.computeIfAbsent(this.getId(pName, pTags), id -> Timer.builder(pName)
+                .description(pDescription)
+                .tags(pTags)
+                .publishPercentileHistogram()
+                .register(this.meterRegistry));
+    }
+
+    /**
+     * Return a distribution summary with a percentile histogram, registering it the first time.
+     * @param pName the meter name
+     * @param pDescription the meter description
+     * @param pTags the tags, as key and value pairs
+     * @return the distribution summary
+     */
+    private DistributionSummary summary(final String pName, final String pDescription, final String... pTags) {
+        return this.summaries.computeIfAbsent(this.getId(pName, pTags), id -> DistributionSummary.builder(pName)
+                .description(pDescription)
+                .tags(pTags)
+                .publishPercentileHistogram()
+                .register(this.meterRegistry));
+    }
+
+    /**
+     * Return the key of a meter.
+     * @param pName the meter name
+     * @param pTags the tags, as key and value pairs
+     * @return the name followed by the tags
+     */
+    private List<String> getId(final String pName, final String... pTags) {
+        final String[] result = new String[pTags.length + 1];
+        result[0] = pName;
+        System.arraycopy(pTags, 0, result, 1, pTags.length);
+        return List.of(result);
+    }
+}
@@ -0,0 +1,247 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.services;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Statistics configuration.
+ * <p>
+ *     Values are read from application.properties with the prefix "agriapi.stats".
+ * </p>
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ * @see <a href="https://docs.spring.io/spring-boot/docs/current/reference/html/spring-boot-features.html#boot-features-external-config-typesafe-configuration-properties">Type-safe Configuration Properties</a>
+ */
+@Component
+@ConfigurationProperties(prefix = "agriapi.stats")
+@FieldDefaults(level= AccessLevel.PRIVATE)
+@ToString
+public class StatsProperties {
+
+    /**
+     * The statistics engine.
+     */
+    @Getter
+    @Setter
+    StatsEngine engine = StatsEngine.ROLLUP;
+
+    /**
+     * The number of varieties summarized together before their results are streamed.
+     */
+    @Getter
+    @Setter
+    int streamChunkSize = 10;
+
+    /**
+     * The number of crops fetched at a time from the database by the ROWS engine.
+     */
+    @Getter
+    @Setter
+    int fetchSize = 1000;
+
+    /**
+     * The maximum number of years of a time series.
+     */
+    @Getter
+    @Setter
+    int maxSeriesYears = 100;
+
+    /**
+     * The maximum number of requests of a batch.
+     */
+    @Getter
+    @Setter
+    int maxBatchSize = 10000;
+
+    /**
+     * <code>true</code> to share the computation of identical requests received at the same time.
+     */
+    @Getter
+    @Setter
+    boolean coalesce = true;
+
+    /**
+     * The results cache configuration.
+     */
+    @Getter
+    final Cache cache = new Cache();
+
+    /**
+     * The parallel computation configuration.
+     */
+    @Getter
+    final Parallel parallel = new Parallel();
+
+    /**
+     * The asynchronous requests configuration.
+     */
+    @Getter
+    final Async async = new Async();
+
+    /**
+     * The rollups maintenance configuration.
+     */
+    @Getter
+    final Rollup rollup = new Rollup();
+
+    /**
+     * Results cache configuration.
+     */
+    @FieldDefaults(level= AccessLevel.PRIVATE)
+    @ToString
+    public static class Cache {
+
+        /**
+         * <code>true</code> to cache results.
+         */
+        @Getter
+        @Setter
+        boolean enabled = true;
+
+        /**
+         * The maximum number of cached requests.
+         */
+        @Getter
+        @Setter
+        int maxSize = 10000;
+
+        /**
+         * The time to live of a cached result.
+         */
+        @Getter
+        @Setter
+        Duration ttl = Duration.ofMinutes(10);
+    }
+
+    /**
+     * Parallel computation configuration.
+     */
+    @FieldDefaults(level= AccessLevel.PRIVATE)
+    @ToString
+    public static class Parallel {
+
+        /**
+         * <code>true</code> to summarize chunks of varieties concurrently.
+         */
+        @Getter
+        @Setter
+        boolean enabled = false;
+
+        /**
+         * The maximum number of threads, also limited by the share of the connection pool, see StatsConnectionBudget.
+         */
+        @Getter
+        @Setter
+        int threads = 4;
+
+        /**
+         * The maximum number of waiting tasks, beyond that the requesting thread runs the task itself.
+         */
+        @Getter
+        @Setter
+        int queueCapacity = 1000;
+
+        /**
+         * The number of varieties summarized by a task.
+         */
+        @Getter
+        @Setter
+        int chunkSize = 10;
+
+        /**
+         * The maximum duration of the computation of a request.
+         */
+        @Getter
+        @Setter
+        Duration timeout = Duration.ofSeconds(30);
+    }
+
+    /**
+     * Asynchronous requests configuration.
+     */
+    @FieldDefaults(level= AccessLevel.PRIVATE)
+    @ToString
+    public static class Async {
+
+        /**
+         * <code>true</code> to compute requests out of the web server threads.
+         */
+        @Getter
+        @Setter
+        boolean enabled = false;
+
+        /**
+         * The maximum number of requests computed concurrently, never more than the share of the connection pool
+         * left by the parallel computation, see StatsConnectionBudget.
+         */
+        @Getter
+        @Setter
+        int maxConcurrency = 16;
+
+        /**
+         * The maximum number of waiting requests, beyond that requests are rejected.
+         */
+        @Getter
+        @Setter
+        int queueCapacity = 200;
+
+        /**
+         * The maximum duration of a request, waiting time included, also the maximum time a request waits for
+         * an identical one in progress. Must be lower than spring.mvc.async.request-timeout.
+         */
+        @Getter
+        @Setter
+        Duration timeout = Duration.ofSeconds(20);
+    }
+
+    /**
+     * Rollups maintenance configuration.
+     */
+    @FieldDefaults(level= AccessLevel.PRIVATE)
+    @ToString
+    public static class Rollup {
+
+        /**
+         * The maximum number of committed transactions whose changes are applied to the rollups together.
+         */
+        @Getter
+        @Setter
+        int batchSize = 100;
+
+        /**
+         * The maximum number of committed transactions waiting to be applied, beyond that all rollups are computed again.
+         */
+        @Getter
+        @Setter
+        int queueCapacity = 1000;
+    }
+}
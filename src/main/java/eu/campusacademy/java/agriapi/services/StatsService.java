@@ -26,12 +26,16 @@
 package eu.campusacademy.java.agriapi.services;
 
 import eu.campusacademy.java.agriapi.data.repositories.CropRepository;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * The statistics service.
@@ -47,19 +51,325 @@ import java.util.*;
 public class StatsService {
 
     private final CropRepository cropRepository;
+    private final StatsProperties statsProperties;
+    private final YieldRollupService yieldRollupService;
+    private final ColumnarYieldStore columnarYieldStore;
+    private final DictionaryService dictionaryService;
+    private final StatsCache statsCache;
+    private final StatsCoalescer statsCoalescer;
+    private final StatsExecutor statsExecutor;
+    private final StatsMetrics statsMetrics;
+    private final StatsAsyncExecutor statsAsyncExecutor;
 
     /**
      * Obtain and return statistics
+     * <p>
+     *     Results are read from the cache when the same request, whatever the order of its varieties and locations,
+     *     has already been computed. When it is being computed by an other thread, its result is awaited
+     *     and shared rather than computed twice, see StatsCoalescer. Results are cached and shared without
+     *     locations, each request gets them with its own list of locations.
+     * </p>
+     * @param pParams statistics params
+     * @return statistics results
+     * @exception IllegalArgumentException if the request is invalid
+     */
+    public List<StatisticResult> getStats(final StatisticParams pParams) throws IllegalArgumentException {
+        final LocationType locationType = this.getLocationType(pParams);
+        final Set<StatisticType> types = this.getTypes(pParams);
+        final Timer.Sample sample = statsMetrics.start();
+        final StatisticType type = types.iterator().next();
+        final List<String> locations = this.getLocations(locationType, pParams);
+        final StatisticKey key = StatisticKey.of(pParams, types, locationType, locations);
+        Map<String, StatisticResult> cached = statsCache.get(key);
+        if (null == cached) {
+            final long generation = statsCache.getGeneration();
+            cached = statsCoalescer.execute(key, generation, () -> {
+                final Map<String, StatisticResult> computed = new HashMap<>();
+                final Map<VarietyYear, YieldSummary> summaries = this.summarize(locationType, type, pParams.getVarieties(),
+                        Collections.singletonList(pParams.getYear()), this.isSketchNeeded(types), pParams);
+                final long calcul = System.nanoTime();
+                for (final String variety : pParams.getVarieties()) {
+                    computed.put(variety, calcul(variety, this.getSummary(summaries, variety, pParams.getYear()), types, locationType,
+                            null, pParams.getYear()));
+                }
+                statsMetrics.recordCalcul("stats", locationType, type, System.nanoTime() - calcul);
+                statsCache.put(key, computed, generation);
+                return computed;
+            });
+        }
+        final List<StatisticResult> results = this.getResults(pParams, locations, cached);
+        statsMetrics.recordRequest(sample, "stats", locationType, type, pParams.getVarieties().size());
+        return results;
+    }
+
+    /**
+     * Obtain statistics asynchronously.
+     * <p>
+     *     When asynchronous requests are enabled, statistics are computed like getStats by a thread of the
+     *     StatsAsyncExecutor and the calling thread returns at once. Otherwise they are computed by the calling
+     *     thread and the returned future is already completed.
+     * </p>
+     * @param pParams statistics params
+     * @return the future statistics results
+     * @see StatsAsyncExecutor#supply(Supplier) for the ways the future can fail
+     */
+    public CompletableFuture<List<StatisticResult>> getStatsAsync(final StatisticParams pParams) {
+        if (statsAsyncExecutor.isEnabled()) {
+            return statsAsyncExecutor.supply(() -> this.getStats(pParams));
+        }
+        return CompletableFuture.completedFuture(this.getStats(pParams));
+    }
+
+    /**
+     * Check a request of statistics to be streamed.
+     * <p>
+     *     The request is checked at once, so an invalid one can be rejected before the response is started,
+     *     statistics are computed only by the forEach method of the returned stream.
+     * </p>
+     * @param pParams statistics params
+     * @return the stream of statistics results
+     * @exception IllegalArgumentException if the request is invalid
+     */
+    public StatsStream prepareStream(final StatisticParams pParams) throws IllegalArgumentException {
+        if (null == pParams.getVarieties()) {
+            throw new IllegalArgumentException("No variety");
+        }
+        return new StatsStream(pParams);
+    }
+
+    /**
+     * Obtain statistics and give them one by one to a consumer as soon as they are computed.
+     * @param pParams statistics params
+     * @param pConsumer the consumer of results, called in the order of varieties
+     * @exception IllegalArgumentException if the request is invalid
+     * @see StatsStream#forEach(Consumer)
+     */
+    public void streamStats(final StatisticParams pParams, final Consumer<StatisticResult> pConsumer) throws IllegalArgumentException {
+        this.prepareStream(pParams).forEach(pConsumer);
+    }
+
+    /**
+     * Obtain statistics by variety and by location.
+     * <p>
+     *     Instead of one value pooling all the requested locations, each location has its own result, with a list
+     *     of locations reduced to its code. All of them are computed with one query grouped by location.
+     *     Results are ordered by variety then by location, in the order of the request. The cache is not used.
+     * </p>
+     * @param pParams statistics params
+     * @return statistics results, one by variety and location
+     */
+    public List<StatisticResult> getBreakdown(final StatisticParams pParams) {
+        final LocationType locationType = this.getLocationType(pParams);
+        final Set<StatisticType> types = this.getTypes(pParams);
+        final Timer.Sample sample = statsMetrics.start();
+        final StatisticType type = types.iterator().next();
+        final Set<String> locations = new LinkedHashSet<>(this.getLocations(locationType, pParams));
+        final Map<VarietyYear, Map<String, YieldSummary>> summaries = this.summarizeByLocation(locationType, type, pParams.getVarieties(),
+                new ArrayList<>(locations), Collections.singletonList(pParams.getYear()), this.isSketchNeeded(types));
+        final List<StatisticResult> results = new LinkedList<>();
+        final long calcul = System.nanoTime();
+        for (final String variety : pParams.getVarieties()) {
+            final Map<String, YieldSummary> byLocation = summaries.getOrDefault(new VarietyYear(variety, pParams.getYear()), Collections.emptyMap());
+            for (final String location : locations) {
+                results.add(calcul(variety, byLocation.getOrDefault(location, new YieldSummary()), types, locationType,
+                        Collections.singletonList(location), pParams.getYear()));
+            }
+        }
+        statsMetrics.recordCalcul("breakdown", locationType, type, System.nanoTime() - calcul);
+        statsMetrics.recordRequest(sample, "breakdown", locationType, type, pParams.getVarieties().size());
+        return results;
+    }
+
+    /**
+     * Obtain the statistics of a batch of requests.
+     * <p>
+     *     Each request is answered as by getStats, but requests are planned together: cached ones are answered
+     *     from the cache, the others are grouped by location type and year and each group is summarized with one
+     *     query grouped by location, over the union of the varieties and locations of its requests.
+     *     The summaries of the locations of a request are then merged, a crop being in one location only the merged
+     *     summary is the one getStats would have computed, quantile sketches included.
+     *     So thousands of requests over a few years cost a few queries, at the price of reading combinations of
+     *     varieties and locations no request of the group asked for.
+     * </p>
+     * <p>
+     *     All requests are checked before any query, if one is invalid an IllegalArgumentException is thrown with
+     *     its index and message, for instance "Request 3: No statistic type".
+     * </p>
+     * @param pBatch statistics params of each request
+     * @return statistics results by index of request in the batch
+     * @exception IllegalArgumentException if there are too many requests or a request is invalid
+     */
+    public Map<Integer, List<StatisticResult>> getBatch(final List<StatisticParams> pBatch) throws IllegalArgumentException {
+        if (pBatch.size() > statsProperties.getMaxBatchSize()) {
+            throw new IllegalArgumentException("Too many requests");
+        }
+        final Map<Integer, List<StatisticResult>> results = new TreeMap<>();
+        final Map<LocationType, Map<Integer, BatchGroup>> groups = new EnumMap<>(LocationType.class);
+        final List<BatchRequest> requests = new ArrayList<>(pBatch.size());
+        for (int index = 0; index < pBatch.size(); index++) {
+            final BatchRequest request;
+            try {
+                request = new BatchRequest(index, pBatch.get(index));
+            } catch (final IllegalArgumentException e) {
+                throw new IllegalArgumentException("Request " + index + ": " + e.getMessage(), e);
+            }
+            requests.add(request);
+        }
+        final long generation = statsCache.getGeneration();
+        for (final BatchRequest request : requests) {
+            final Map<String, StatisticResult> cached = statsCache.get(request.key);
+            if (null == cached) {
+                groups.computeIfAbsent(request.locationType, locationType -> new HashMap<>())
+                        .computeIfAbsent(request.params.getYear(), year -> new BatchGroup()).add(request);
+            } else {
+                results.put(request.index, this.getResults(request.params, request.locations, cached));
+            }
+        }
+        groups.forEach((locationType, groupsByYear) -> groupsByYear.forEach((year, group) -> {
+            final Timer.Sample sample = statsMetrics.start();
+            final Map<VarietyYear, Map<String, YieldSummary>> summaries = this.summarizeByLocation(locationType, group.type,
+                    new ArrayList<>(group.varieties), new ArrayList<>(group.locations), Collections.singletonList(year), group.sketch);
+            final long calcul = System.nanoTime();
+            for (final BatchRequest request : group.requests) {
+                final Map<String, StatisticResult> computed = new HashMap<>();
+                for (final String variety : request.params.getVarieties()) {
+                    final Map<String, YieldSummary> byLocation = summaries.getOrDefault(new VarietyYear(variety, year), Collections.emptyMap());
+                    final YieldSummary summary = this.isSketchNeeded(request.types) ? YieldSummary.withSketch() : new YieldSummary();
+                    new LinkedHashSet<>(request.locations).forEach(location -> Optional.ofNullable(byLocation.get(location)).ifPresent(summary::merge));
+                    computed.put(variety, calcul(variety, summary, request.types, locationType, null, year));
+                }
+                statsCache.put(request.key, computed, generation);
+                results.put(request.index, this.getResults(request.params, request.locations, computed));
+            }
+            statsMetrics.recordCalcul("batch", locationType, group.type, System.nanoTime() - calcul);
+            statsMetrics.recordRequest(sample, "batch", locationType, group.type, group.varieties.size());
+        }));
+        return results;
+    }
+
+    /**
+     * Return the results of a request in the order of its varieties, with its list of locations.
      * @param pParams statistics params
+     * @param pLocations the locations of the request, as requested
+     * @param pResultsByVariety the results by variety, without locations
      * @return statistics results
      */
-    public List<StatisticResult> getStats(final StatisticParams pParams) {
+    private List<StatisticResult> getResults(final StatisticParams pParams, final List<String> pLocations, final Map<String, StatisticResult> pResultsByVariety) {
         final List<StatisticResult> results = new LinkedList<>();
+        pParams.getVarieties().forEach(variety -> results.add(pResultsByVariety.get(variety).withLocations(pLocations)));
+        return results;
+    }
+
+    /**
+     * Obtain a time series of statistics by variety.
+     * <p>
+     *     The yields of all varieties and all years are summarized together, grouped by variety and year,
+     *     so a series of ten years costs one query instead of ten requests. The cache is not used.
+     * </p>
+     * @param pParams statistics params, with a list or a range of years
+     * @return statistics series, one by variety in the order of varieties
+     * @exception IllegalArgumentException if there is no year or too many years
+     */
+    public List<StatisticSeries> getSeries(final StatisticParams pParams) throws IllegalArgumentException {
         final LocationType locationType = this.getLocationType(pParams);
-        pParams.getVarieties().forEach(variety -> calcul(results, variety, locationType, pParams));
+        final Set<StatisticType> types = this.getTypes(pParams);
+        final List<Integer> years = this.getYears(pParams);
+        final Timer.Sample sample = statsMetrics.start();
+        final StatisticType type = types.iterator().next();
+        final Map<VarietyYear, YieldSummary> summaries = this.summarize(locationType, type, pParams.getVarieties(), years, this.isSketchNeeded(types), pParams);
+        final List<StatisticSeries> results = new LinkedList<>();
+        final long calcul = System.nanoTime();
+        for (final String variety : pParams.getVarieties()) {
+            final List<StatisticPoint> points = new ArrayList<>(years.size());
+            years.forEach(year -> points.add(calcul(year, this.getSummary(summaries, variety, year), types)));
+            results.add(new StatisticSeries(type, variety, locationType, this.getLocations(locationType, pParams), points));
+        }
+        statsMetrics.recordCalcul("series", locationType, type, System.nanoTime() - calcul);
+        statsMetrics.recordRequest(sample, "series", locationType, type, pParams.getVarieties().size());
         return results;
     }
 
+    /**
+     * Obtain the years of a time series from params of request.
+     * <p>
+     *     The years are the list of years if it is not null and not empty, all years from fromYear to toYear if
+     *     both are given, the year otherwise. Years are sorted and without duplicate.
+     *     If there is no year at all throw an IllegalArgumentException with message "No year",
+     *     if there are more years than the configured maximum throw an IllegalArgumentException with message "Too many years".
+     * </p>
+     * @param pParams params of request
+     * @return the sorted years
+     * @exception IllegalArgumentException if there is no year, if fromYear is after toYear or if there are too many years
+     */
+    private List<Integer> getYears(final StatisticParams pParams) throws IllegalArgumentException {
+        final SortedSet<Integer> result = new TreeSet<>();
+        if (null != pParams.getYears() && !pParams.getYears().isEmpty()) {
+            pParams.getYears().stream().filter(Objects::nonNull).forEach(result::add);
+        } else if (null != pParams.getFromYear() && null != pParams.getToYear()) {
+            if (pParams.getFromYear() > pParams.getToYear()) {
+                throw new IllegalArgumentException("From year is after to year");
+            }
+            if ((long) pParams.getToYear() - pParams.getFromYear() >= statsProperties.getMaxSeriesYears()) {
+                throw new IllegalArgumentException("Too many years");
+            }
+            for (int year = pParams.getFromYear(); year <= pParams.getToYear(); year++) {
+                result.add(year);
+            }
+        } else if (null != pParams.getYear()) {
+            result.add(pParams.getYear());
+        }
+        if (result.isEmpty()) {
+            throw new IllegalArgumentException("No year");
+        }
+        if (result.size() > statsProperties.getMaxSeriesYears()) {
+            throw new IllegalArgumentException("Too many years");
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * Check if some statistic types are estimated from a quantile sketch.
+     * @param pTypes the statistic types
+     * @return <code>true</code> if MEDIAN, P10 or P90 is expected
+     */
+    private boolean isSketchNeeded(final Set<StatisticType> pTypes) {
+        return pTypes.contains(StatisticType.MEDIAN) || pTypes.contains(StatisticType.P10) || pTypes.contains(StatisticType.P90);
+    }
+
+    /**
+     * Return the yield summary of a variety and a year, an empty summary when there is no crop.
+     * @param pSummaries the yield summaries by variety and year
+     * @param pVariety the variety
+     * @param pYear the year
+     * @return the yield summary
+     */
+    private YieldSummary getSummary(final Map<VarietyYear, YieldSummary> pSummaries, final String pVariety, final Integer pYear) {
+        return pSummaries.getOrDefault(new VarietyYear(pVariety, pYear), new YieldSummary());
+    }
+
+    /**
+     * Obtain the expected statistic types from params of request.
+     * <p>
+     *     The types are the collection of types if it is not null and not empty, the type otherwise.
+     *     If there is no type at all throw an IllegalArgumentException with message "No statistic type".
+     * </p>
+     * @param pParams params of request
+     * @return the statistic types, in the order of the request, the first one being the headline type of results
+     * @exception IllegalArgumentException if there is no type
+     */
+    private Set<StatisticType> getTypes(final StatisticParams pParams) throws IllegalArgumentException {
+        final Set<StatisticType> result = new LinkedHashSet<>();
+        if (null != pParams.getTypes() && !pParams.getTypes().isEmpty()) {
+            pParams.getTypes().stream().filter(Objects::nonNull).forEach(result::add);
+        } else if (null != pParams.getType()) {
+            result.add(pParams.getType());
+        }
+        if (result.isEmpty()) {
+            throw new IllegalArgumentException("No statistic type");
+        }
+        return result;
+    }
+
     /**
      * Check and obtain location type from params of request using this rules
      * <p>
@@ -112,67 +422,392 @@ public class StatsService {
     }
 
     /**
-     * Calcul statistics for a variety, a liste of location and a year/
-     * @param pResults the collection of statistics
-     * @param pVariety the curent variety
+     * Return the list of locations matching the location type.
      * @param pLocationType the type of localisation
      * @param pParams request params
+     * @return the list of locations
      */
-    private void calcul(final List<StatisticResult> pResults, final String pVariety, final LocationType pLocationType, final StatisticParams pParams) {
-        List<CropInfos> crops = new ArrayList<>();
+    private List<String> getLocations(final LocationType pLocationType, final StatisticParams pParams) {
         List<String> locations = null;
         switch (pLocationType) {
             case CITY:  {
-                crops = cropRepository.findAllByVarietyAndCitiesAndYear(pVariety, pParams.getCityCode(), pParams.getYear());
                 locations = pParams.getCityCode();
                 break;
             }
             case DEPARTMENT: {
-                crops = cropRepository.findAllByVarietyAndDepartmentsAndYear(pVariety, pParams.getDepartmentCode(), pParams.getYear());
                 locations = pParams.getDepartmentCode();
                 break;
             }
             case REGION: {
-                crops = cropRepository.findAllByVarietyAndRegionsAndYear(pVariety, pParams.getRegionCode(), pParams.getYear());
                 locations = pParams.getRegionCode();
                 break;
             }
         }
-        pResults.add(new StatisticResult(pParams.getType(), pVariety, pLocationType,  locations, pParams.getYear(), this.getResult(crops, pParams)));
+        return locations;
     }
 
     /**
-     * Calcul and return the value of statistic from a list of crops
-     * @param pCrops the crops list
+     * Summarize the yields of varieties for some years, pooling all requested locations.
+     * @param pLocationType the type of localisation
+     * @param pType the headline statistic type of the request, used to tag the meters, <code>null</code> for several types
+     * @param pVarieties the varieties
+     * @param pYears the years
+     * @param pSketch <code>true</code> if quantile sketches are needed
      * @param pParams request params
-     * @return value of statistic
-     */
-    private BigDecimal getResult(final List<CropInfos> pCrops, final StatisticParams pParams) {
-        BigDecimal result = null;
-        List<BigDecimal> yields = new ArrayList<>();
-        pCrops.forEach(crop -> {
-            BigDecimal qt = crop.getQuantity().multiply(BigDecimal.TEN);
-            BigDecimal sh = crop.getSurface();
-            yields.add(qt.divide(sh, RoundingMode.UP));
-        });
-        if(yields.size() > 0) {
-            switch (pParams.getType()) {
-                case MIN: {
-                    result = Collections.min(yields);
-                    break;
-                }
-                case MAX: {
-                    result = Collections.max(yields);
-                    break;
-                }
-                case AVERAGE: {
-                    BigDecimal sum = yields.stream().filter(Objects::nonNull).reduce(BigDecimal.ZERO, BigDecimal::add);
-                    result = sum.divide(new BigDecimal(yields.size()), RoundingMode.UP);
-                    break;
-                }
+     * @return the yield summaries by variety and year
+     */
+    private Map<VarietyYear, YieldSummary> summarize(final LocationType pLocationType, final StatisticType pType, final List<String> pVarieties, final List<Integer> pYears, final boolean pSketch, final StatisticParams pParams) {
+        final Map<Integer, String> varieties = dictionaryService.findVarieties(pVarieties);
+        final Map<Integer, String> locations = dictionaryService.findLocations(this.getLocations(pLocationType, pParams));
+        final Map<VarietyYear, YieldSummary> result = new HashMap<>();
+        this.summarize(pLocationType, pType, varieties.keySet(), locations.keySet(), pYears, false, pSketch)
+                .forEach((key, summary) -> result.put(new VarietyYear(varieties.get(key.getVarietyId()), key.getYear()), summary));
+        return result;
+    }
+
+    /**
+     * Summarize the yields of varieties for some years, keeping one summary by requested location.
+     * @param pLocationType the type of localisation
+     * @param pType the headline statistic type of the request, used to tag the meters, <code>null</code> for several types
+     * @param pVarieties the varieties
+     * @param pLocations the location codes
+     * @param pYears the years
+     * @param pSketch <code>true</code> if quantile sketches are needed
+     * @return the yield summaries by location code, by variety and year
+     */
+    private Map<VarietyYear, Map<String, YieldSummary>> summarizeByLocation(final LocationType pLocationType, final StatisticType pType, final List<String> pVarieties, final List<String> pLocations, final List<Integer> pYears, final boolean pSketch) {
+        final Map<Integer, String> varieties = dictionaryService.findVarieties(pVarieties);
+        final Map<Integer, String> locations = dictionaryService.findLocations(pLocations);
+        final Map<VarietyYear, Map<String, YieldSummary>> result = new HashMap<>();
+        this.summarize(pLocationType, pType, varieties.keySet(), locations.keySet(), pYears, true, pSketch)
+                .forEach((key, summary) -> result.computeIfAbsent(new VarietyYear(varieties.get(key.getVarietyId()), key.getYear()), varietyYear -> new HashMap<>())
+                        .put(locations.get(key.getLocationId()), summary));
+        return result;
+    }
+
+    /**
+     * Summarize the yields of varieties ids.
+     * <p>
+     *     Varieties and locations are given as dictionary ids, queries only compare integers.
+     *     When parallel computation is enabled, varieties are split in chunks summarized concurrently
+     *     by the statistics executor.
+     * </p>
+     * @param pLocationType the type of localisation
+     * @param pType the headline statistic type of the request, used to tag the meters, <code>null</code> for several types
+     * @param pVarieties the varieties ids
+     * @param pLocations the locations ids
+     * @param pYears the years
+     * @param pByLocation <code>true</code> to keep one summary by location, <code>false</code> to pool locations
+     * @param pSketch <code>true</code> if quantile sketches are needed
+     * @return the yield summaries by variety id, year and, if asked, location id
+     */
+    private Map<YieldKey, YieldSummary> summarize(final LocationType pLocationType, final StatisticType pType, final Collection<Integer> pVarieties, final Collection<Integer> pLocations, final List<Integer> pYears, final boolean pByLocation, final boolean pSketch) {
+        final Map<YieldKey, YieldSummary> result = new HashMap<>();
+        if (!pVarieties.isEmpty() && !pLocations.isEmpty()) {
+            final List<Integer> locations = new ArrayList<>(pLocations);
+            final StatsProperties.Parallel parallel = statsProperties.getParallel();
+            final List<List<Integer>> chunks = this.partition(new ArrayList<>(pVarieties), Math.max(1, parallel.getChunkSize()));
+            if (parallel.isEnabled() && chunks.size() > 1) {
+                final List<Callable<Map<YieldKey, YieldSummary>>> tasks = new ArrayList<>();
+                chunks.forEach(chunk -> tasks.add(() -> this.summarizeChunk(pLocationType, pType, chunk, locations, pYears, pByLocation, pSketch)));
+                statsExecutor.invokeAll(tasks).forEach(result::putAll);
+            } else {
+                result.putAll(this.summarizeChunk(pLocationType, pType, new ArrayList<>(pVarieties), locations, pYears, pByLocation, pSketch));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Split a list in chunks.
+     * @param pList the list
+     * @param pChunkSize the maximum size of a chunk
+     * @param <T> the type of elements
+     * @return the chunks
+     */
+    private <T> List<List<T>> partition(final List<T> pList, final int pChunkSize) {
+        final List<List<T>> result = new ArrayList<>();
+        for (int i = 0; i < pList.size(); i += pChunkSize) {
+            result.add(pList.subList(i, Math.min(i + pChunkSize, pList.size())));
+        }
+        return result;
+    }
+
+    /**
+     * Summarize the yields of varieties using the configured engine.
+     * @param pLocationType the type of localisation
+     * @param pType the headline statistic type of the request, used to tag the meters, <code>null</code> for several types
+     * @param pVarieties the varieties ids
+     * @param pLocations the locations ids
+     * @param pYears the years
+     * @param pByLocation <code>true</code> to keep one summary by location, <code>false</code> to pool locations
+     * @param pSketch <code>true</code> if quantile sketches are needed
+     * @return the yield summaries by variety id, year and, if asked, location id
+     */
+    private Map<YieldKey, YieldSummary> summarizeChunk(final LocationType pLocationType, final StatisticType pType, final List<Integer> pVarieties, final List<Integer> pLocations, final List<Integer> pYears, final boolean pByLocation, final boolean pSketch) {
+        Map<YieldKey, YieldSummary> result = null;
+        switch (statsProperties.getEngine()) {
+            case ROWS: {
+                result = this.summarizeCrops(pLocationType, pType, pVarieties, pLocations, pYears, pByLocation, pSketch);
+                break;
+            }
+            case AGGREGATE: {
+                result = this.queryCrops(pLocationType, pType, pVarieties, pLocations, pYears, pByLocation, pSketch);
+                break;
+            }
+            case ROLLUP: {
+                result = yieldRollupService.isReady()
+                        ? this.timeQuery("rollup", pLocationType, pType, () -> yieldRollupService.summarize(pLocationType, pVarieties, pLocations, pYears, pByLocation, pSketch))
+                        : this.queryCrops(pLocationType, pType, pVarieties, pLocations, pYears, pByLocation, pSketch);
+                break;
+            }
+            case COLUMNAR: {
+                result = columnarYieldStore.isReady()
+                        ? this.timeQuery("columnar", pLocationType, pType, () -> columnarYieldStore.summarize(pLocationType, pVarieties, pLocations, pYears, pByLocation, pSketch))
+                        : this.queryCrops(pLocationType, pType, pVarieties, pLocations, pYears, pByLocation, pSketch);
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Run and time a query returning one summary by row.
+     * @param pQuery the query name
+     * @param pLocationType the type of localisation
+     * @param pType the headline statistic type of the request, used to tag the meters, <code>null</code> for several types
+     * @param pSummarize the query
+     * @return the yield summaries returned by the query
+     */
+    private Map<YieldKey, YieldSummary> timeQuery(final String pQuery, final LocationType pLocationType, final StatisticType pType, final Supplier<Map<YieldKey, YieldSummary>> pSummarize) {
+        final Timer.Sample sample = statsMetrics.start();
+        final Map<YieldKey, YieldSummary> result = pSummarize.get();
+        statsMetrics.recordQuery(sample, pQuery, pLocationType, pType, result.size());
+        return result;
+    }
+
+    /**
+     * Summarize the yields of varieties from crops.
+     * <p>
+     *     The database aggregates yields when possible. A quantile sketch can't be built by SQL so, when one is needed,
+     *     crops are read one by one instead.
+     * </p>
+     * @param pLocationType the type of localisation
+     * @param pType the headline statistic type of the request, used to tag the meters, <code>null</code> for several types
+     * @param pVarieties the varieties ids
+     * @param pLocations the locations ids
+     * @param pYears the years
+     * @param pByLocation <code>true</code> to keep one summary by location, <code>false</code> to pool locations
+     * @param pSketch <code>true</code> if quantile sketches are needed
+     * @return the yield summaries by variety id, year and, if asked, location id
+     */
+    private Map<YieldKey, YieldSummary> queryCrops(final LocationType pLocationType, final StatisticType pType, final List<Integer> pVarieties, final List<Integer> pLocations, final List<Integer> pYears, final boolean pByLocation, final boolean pSketch) {
+        return pSketch
+                ? this.summarizeCrops(pLocationType, pType, pVarieties, pLocations, pYears, pByLocation, true)
+                : this.aggregateCrops(pLocationType, pType, pVarieties, pLocations, pYears, pByLocation);
+    }
+
+    /**
+     * Let the database aggregate the yields of varieties by variety, year and, if asked, location with only one query.
+     * @param pLocationType the type of localisation
+     * @param pType the headline statistic type of the request, used to tag the meters, <code>null</code> for several types
+     * @param pVarieties the varieties ids
+     * @param pLocations the locations ids
+     * @param pYears the years
+     * @param pByLocation <code>true</code> to keep one summary by location, <code>false</code> to pool locations
+     * @return the yield summaries by variety id, year and, if asked, location id
+     */
+    private Map<YieldKey, YieldSummary> aggregateCrops(final LocationType pLocationType, final StatisticType pType, final List<Integer> pVarieties, final List<Integer> pLocations, final List<Integer> pYears, final boolean pByLocation) {
+        final Timer.Sample sample = statsMetrics.start();
+        List<YieldAggregate> aggregates = new ArrayList<>();
+        switch (pLocationType) {
+            case CITY:  {
+                aggregates = pByLocation
+                        ? cropRepository.breakdownByVarietiesAndCitiesAndYears(pVarieties, pLocations, pYears)
+                        : cropRepository.aggregateByVarietiesAndCitiesAndYears(pVarieties, pLocations, pYears);
+                break;
+            }
+            case DEPARTMENT: {
+                aggregates = pByLocation
+                        ? cropRepository.breakdownByVarietiesAndDepartmentsAndYears(pVarieties, pLocations, pYears)
+                        : cropRepository.aggregateByVarietiesAndDepartmentsAndYears(pVarieties, pLocations, pYears);
+                break;
+            }
+            case REGION: {
+                aggregates = pByLocation
+                        ? cropRepository.breakdownByVarietiesAndRegionsAndYears(pVarieties, pLocations, pYears)
+                        : cropRepository.aggregateByVarietiesAndRegionsAndYears(pVarieties, pLocations, pYears);
+                break;
             }
         }
+        statsMetrics.recordQuery(sample, pByLocation ? "breakdown" : "aggregate", pLocationType, pType, aggregates.size());
+        final Map<YieldKey, YieldSummary> result = new HashMap<>();
+        aggregates.forEach(aggregate -> result.put(YieldKey.of(aggregate), YieldSummary.of(aggregate)));
+        return result;
+    }
+
+    /**
+     * Read the crops of varieties with only one query and summarize their yields by variety, year and, if asked, location.
+     * <p>
+     *     Crops are read with a database cursor and added to the summaries one by one, so they are never all loaded.
+     * </p>
+     * @param pLocationType the type of localisation
+     * @param pType the headline statistic type of the request, used to tag the meters, <code>null</code> for several types
+     * @param pVarieties the varieties ids
+     * @param pLocations the locations ids
+     * @param pYears the years
+     * @param pByLocation <code>true</code> to keep one summary by location, <code>false</code> to pool locations
+     * @param pSketch <code>true</code> if quantile sketches are needed
+     * @return the yield summaries by variety id, year and, if asked, location id
+     */
+    private Map<YieldKey, YieldSummary> summarizeCrops(final LocationType pLocationType, final StatisticType pType, final List<Integer> pVarieties, final List<Integer> pLocations, final List<Integer> pYears, final boolean pByLocation, final boolean pSketch) {
+        final Timer.Sample sample = statsMetrics.start();
+        final Map<YieldKey, YieldSummary> result = new HashMap<>();
+        cropRepository.forEachCrop(pLocationType, pVarieties, pLocations, pYears, statsProperties.getFetchSize(),
+                (variety, year, location, quantity, surface) -> result.computeIfAbsent(pByLocation ? new YieldKey(variety, year, location) : new YieldKey(variety, year),
+                        key -> pSketch ? YieldSummary.withSketch() : new YieldSummary()).add(quantity, surface));
+        statsMetrics.recordQuery(sample, "crops", pLocationType, pType, result.size());
+        statsMetrics.recordCrops(pLocationType, result.values().stream().mapToLong(YieldSummary::getCount).sum());
+        return result;
+    }
+
+    /**
+     * Calcul statistics for a variety, a liste of location and a year/
+     * @param pVariety the curent variety
+     * @param pSummary the yield summary of the current variety
+     * @param pTypes the statistic types, the first one being the headline type
+     * @param pLocationType the type of localisation
+     * @param pLocations the locations
+     * @param pYear the year
+     * @return the statistics of the variety
+     */
+    private StatisticResult calcul(final String pVariety, final YieldSummary pSummary, final Set<StatisticType> pTypes, final LocationType pLocationType, final List<String> pLocations, final Integer pYear) {
+        final Map<StatisticType, BigDecimal> values = this.getResult(pSummary, pTypes);
+        final StatisticType type = pTypes.iterator().next();
+        return new StatisticResult(type, pVariety, pLocationType, pLocations, pYear,
+                values.get(type), values, pSummary.getCount());
+    }
+
+    /**
+     * Calcul statistics for a year of a time series.
+     * @param pYear the year
+     * @param pSummary the yield summary of the variety for the year
+     * @param pTypes the statistic types, the first one being the headline type
+     * @return the statistics of the year
+     */
+    private StatisticPoint calcul(final Integer pYear, final YieldSummary pSummary, final Set<StatisticType> pTypes) {
+        final Map<StatisticType, BigDecimal> values = this.getResult(pSummary, pTypes);
+        return new StatisticPoint(pYear, values.get(pTypes.iterator().next()), values, pSummary.getCount());
+    }
+
+    /**
+     * Calcul and return the values of statistics from a yield summary
+     * @param pSummary the yield summary
+     * @param pTypes the statistic types
+     * @return value of statistic by type
+     */
+    private Map<StatisticType, BigDecimal> getResult(final YieldSummary pSummary, final Set<StatisticType> pTypes) {
+        final Map<StatisticType, BigDecimal> result = new EnumMap<>(StatisticType.class);
+        pTypes.forEach(type -> result.put(type, pSummary.getValue(type)));
         return result;
     }
 
+    /**
+     * A checked request of statistics to be streamed.
+     */
+    public class StatsStream {
+
+        private final StatisticParams params;
+        private final LocationType locationType;
+        private final Set<StatisticType> types;
+        private final List<String> locations;
+
+        private StatsStream(final StatisticParams pParams) throws IllegalArgumentException {
+            this.params = pParams;
+            this.locationType = getLocationType(pParams);
+            this.types = getTypes(pParams);
+            this.locations = getLocations(this.locationType, pParams);
+        }
+
+        /**
+         * Compute the statistics and give them one by one to a consumer as soon as they are computed.
+         * <p>
+         *     Varieties are summarized by chunks so only the results of one chunk are in memory at once,
+         *     whatever the number of varieties. The cache is not used.
+         * </p>
+         * @param pConsumer the consumer of results, called in the order of varieties
+         */
+        public void forEach(final Consumer<StatisticResult> pConsumer) {
+            final Timer.Sample sample = statsMetrics.start();
+            final StatisticType type = this.types.iterator().next();
+            long calcul = 0;
+            for (final List<String> chunk : partition(this.params.getVarieties(), Math.max(1, statsProperties.getStreamChunkSize()))) {
+                final Map<VarietyYear, YieldSummary> summaries = summarize(this.locationType, type, chunk,
+                        Collections.singletonList(this.params.getYear()), isSketchNeeded(this.types), this.params);
+                for (final String variety : chunk) {
+                    final long start = System.nanoTime();
+                    final StatisticResult result = calcul(variety, getSummary(summaries, variety, this.params.getYear()),
+                            this.types, this.locationType, this.locations, this.params.getYear());
+                    calcul += System.nanoTime() - start;
+                    pConsumer.accept(result);
+                }
+            }
+            statsMetrics.recordCalcul("stream", this.locationType, type, calcul);
+            statsMetrics.recordRequest(sample, "stream", this.locationType, type, this.params.getVarieties().size());
+        }
+    }
+
+    /**
+     * A checked request of a batch.
+     */
+    private class BatchRequest {
+
+        private final int index;
+        private final StatisticParams params;
+        private final LocationType locationType;
+        private final Set<StatisticType> types;
+        private final List<String> locations;
+        private final StatisticKey key;
+
+        BatchRequest(final int pIndex, final StatisticParams pParams) throws IllegalArgumentException {
+            if (null == pParams || null == pParams.getVarieties()) {
+                throw new IllegalArgumentException("No variety");
+            }
+            this.index = pIndex;
+            this.params = pParams;
+            this.locationType = getLocationType(pParams);
+            this.types = getTypes(pParams);
+            this.locations = getLocations(this.locationType, pParams);
+            this.key = StatisticKey.of(pParams, this.types, this.locationType, this.locations);
+        }
+    }
+
+    /**
+     * The requests of a batch summarized together, those of the same location type and year.
+     */
+    private class BatchGroup {
+
+        private final List<BatchRequest> requests = new ArrayList<>();
+        private final Set<String> varieties = new LinkedHashSet<>();
+        private final Set<String> locations = new LinkedHashSet<>();
+        private boolean sketch;
+
+        /**
+         * The headline type of the requests, <code>null</code> when they have several ones.
+         */
+        private StatisticType type;
+
+        /**
+         * Add a request to the group.
+         * @param pRequest the request
+         */
+        void add(final BatchRequest pRequest) {
+            final StatisticType headline = pRequest.types.iterator().next();
+            this.type = this.requests.isEmpty() || headline == this.type ? headline : null;
+            this.requests.add(pRequest);
+            this.varieties.addAll(pRequest.params.getVarieties());
+            this.locations.addAll(pRequest.locations);
+            this.sketch |= isSketchNeeded(pRequest.types);
+        }
+    }
 }
@@ -0,0 +1,89 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.services;
+
+/**
+ * This interface is used to store aggregated yields returned by stats SQL query.
+ * <p>
+ *     All yields are given in hundredths of quintal by hectare, each crop yield being rounded up to the hundredth
+ *     before aggregation like the computation done in Java.
+ * </p>
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ * @see <a href="https://docs.spring.io/spring-data/jpa/docs/current/reference/html/#reference">Interface based projections information</a>
+ */
+public interface YieldAggregate {
+
+    /**
+     * @return the id of the cropped variety
+     */
+    Integer getVarietyId();
+
+    /**
+     * @return the year of the crops
+     */
+    Integer getYear();
+
+    /**
+     * @return the id of the city, department or region, null when the query does not group by location
+     */
+    Integer getLocationId();
+
+    /**
+     * @return number of crops
+     */
+    Long getYieldCount();
+
+    /**
+     * @return sum of crop yields in hundredths of quintal by hectare
+     */
+    Long getYieldSum();
+
+    /**
+     * @return minimum crop yield in hundredths of quintal by hectare
+     */
+    Long getYieldMin();
+
+    /**
+     * @return maximum crop yield in hundredths of quintal by hectare
+     */
+    Long getYieldMax();
+
+    /**
+     * @return sum of crop quantities in hundredths of tonne
+     */
+    Long getQuantitySum();
+
+    /**
+     * @return sum of plot surfaces in hundredths of hectare
+     */
+    Long getSurfaceSum();
+
+    /**
+     * @return the serialized quantile sketch of crop yields, null when the query does not read it
+     */
+    byte[] getYieldSketch();
+}
@@ -0,0 +1,82 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.services;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * The key of a yield summary computed by a statistics engine: a variety id, a year and optionally a location id.
+ * <p>
+ *     Engines group yields by variety and year in one pass so a time series of several years needs only one query.
+ *     The location id is null when the yields of all requested locations are pooled.
+ *     All field are read-only and equals and hashCode are generated by Lombok so an instance can be used as key of a Map.
+ * </p>
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ */
+@FieldDefaults(level= AccessLevel.PRIVATE, makeFinal = true)
+@AllArgsConstructor
+@EqualsAndHashCode
+@ToString
+public class YieldKey {
+
+    /**
+     * The variety id
+     */
+    @Getter
+    Integer varietyId;
+
+    /**
+     * The year
+     */
+    @Getter
+    Integer year;
+
+    /**
+     * The location id, null when locations are pooled
+     */
+    @Getter
+    Integer locationId;
+
+    /**
+     * Build the key of the pooled yields of a variety and a year.
+     * @param pVarietyId the variety id
+     * @param pYear the year
+     */
+    public YieldKey(final Integer pVarietyId, final Integer pYear) {
+        this(pVarietyId, pYear, null);
+    }
+
+    /**
+     * Build the key of an aggregate.
+     * @param pAggregate the yield aggregate
+     * @return the key
+     */
+    public static YieldKey of(final YieldAggregate pAggregate) {
+        return new YieldKey(pAggregate.getVarietyId(), pAggregate.getYear(), pAggregate.getLocationId());
+    }
+}
@@ -0,0 +1,652 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.services;
+
+import eu.campusacademy.java.agriapi.data.domain.Crop;
+import eu.campusacademy.java.agriapi.data.domain.Farm;
+import eu.campusacademy.java.agriapi.data.domain.Plot;
+import eu.campusacademy.java.agriapi.data.events.EntityChangeEvent;
+import eu.campusacademy.java.agriapi.data.repositories.CropRepository;
+import eu.campusacademy.java.agriapi.data.repositories.FarmRepository;
+import eu.campusacademy.java.agriapi.data.repositories.PlotRepository;
+import eu.campusacademy.java.agriapi.data.repositories.YieldRollupRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The yield rollup service.
+ * <p>
+ *     This service maintains the yield rollups, pre-aggregated yields by variety, year and city, and uses them
+ *     to answer statistics without joining crops, plots and farms.
+ * </p>
+ * <p>
+ *     Count, sum, minimum, maximum, sums of quantities and surfaces and quantile sketches are all mergeable,
+ *     so rollups are only kept at the lowest level, the city, and department and region summaries are merged
+ *     from the rollups of their cities when a request is answered. A rollup is in fact kept by city, department
+ *     and region, so a city which farms declare in two departments is still summarized exactly.
+ *     Rollups are three times fewer to compute and store than with one rollup by level, and requests of all
+ *     levels read the same rows.
+ * </p>
+ * <p>
+ *     Rollups are maintained this way :
+ *     <ul>
+ *         <li>each time a crop, a plot or a farm is saved or deleted, the states before and after the change are noted</li>
+ *         <li>once the transaction is committed, the ids, varieties and years of its changes are queued with their commit time</li>
+ *         <li>a single worker thread takes the queued changes in commit order, by batches of several transactions,
+ *         turns them into deltas, the partials of a variety, a year and a city they affect, and computes again
+ *         only these partials in one new transaction, then invalidates the cached results of their varieties and years</li>
+ *         <li>at startup, if there is no rollup or if changes were committed before, by the importers for instance,
+ *         all of them are computed</li>
+ *     </ul>
+ *     The queue is bounded: changes committed before the startup computation are not queued since it reads them,
+ *     and when the queue is full, under a bulk load for instance, queued changes are dropped and the worker computes
+ *     all rollups again instead of applying them one batch after the other. Nothing is done when the engine is not ROLLUP.
+ *     A new crop affects the partial of its city, a changed plot surface the partials of the crops of the plot,
+ *     a farm moving to an other department the partials of its crops at its old and its new city. Minimum, maximum
+ *     and quantile sketch can't be decremented, so a delta is applied by reading again the crops of its partial,
+ *     not the whole variety and year. When the city of a change can't be found any more, a deleted plot for instance,
+ *     all partials of its variety and year are computed again.
+ * </p>
+ * <p>
+ *     Statistics are thus eventually consistent with the crops. The age of the oldest change not yet applied,
+ *     queued or in the batch being applied, is published as the stats.rollups.lag gauge, in seconds, and the number
+ *     of these transactions as stats.rollups.pending.
+ * </p>
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ * @see <a href="https://docs.spring.io/spring/docs/current/spring-framework-reference/data-access.html#transaction-programmatic">Programmatic transaction management</a>
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class YieldRollupService implements MeterBinder, DisposableBean {
+
+    private final CropRepository cropRepository;
+    private final YieldRollupRepository yieldRollupRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final DictionaryService dictionaryService;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlotRepository plotRepository;
+    private final FarmRepository farmRepository;
+    private final StatsCache statsCache;
+    private final StatsProperties statsProperties;
+
+    /**
+     * The first delay before applying again a failed batch, in milliseconds.
+     */
+    private static final long RETRY_DELAY = 1000;
+
+    /**
+     * The maximum delay before applying again a failed batch, in milliseconds.
+     */
+    private static final long MAX_RETRY_DELAY = 60000;
+
+    /**
+     * The changes of committed transactions, in commit order, created at startup.
+     */
+    private BlockingQueue<PendingChanges> queue;
+
+    /**
+     * The thread applying queued changes, started once the rollups are initialized.
+     */
+    private Thread worker;
+
+    /**
+     * The number of transactions of the batch being applied, taken from the queue but not yet applied.
+     */
+    private volatile int applying;
+
+    /**
+     * The commit time of the oldest transaction of the batch being applied, meaningless when applying is 0.
+     */
+    private volatile long applyingCommitted;
+
+    /**
+     * <code>true</code> once the rollups have been initialized.
+     */
+    private volatile boolean ready = false;
+
+    /**
+     * <code>true</code> when committed changes were not queued, all rollups must then be computed again.
+     */
+    private volatile boolean stale = false;
+
+    /**
+     * Check if the rollups can be used.
+     * @return <code>true</code> if the rollups are initialized, <code>false</code> otherwise
+     */
+    public boolean isReady() {
+        return this.ready;
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry pRegistry) {
+        Gauge.builder("stats.rollups.lag", this, YieldRollupService::getLag)
+                .description("the age of the oldest change not yet applied to the rollups")
+                .baseUnit("seconds")
+                .register(pRegistry);
+        Gauge.builder("stats.rollups.pending", this, YieldRollupService::getPending)
+                .description("the number of committed transactions whose changes are not yet applied to the rollups")
+                .register(pRegistry);
+    }
+
+    /**
+     * Compute all rollups at startup when the ROLLUP engine is used, then start applying changes.
+     * <p>
+     *     Changes are queued from now on, the ones committed before are read by the computation. The rollups
+     *     are kept when there are some and no change was committed before.
+     * </p>
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void initialize() {
+        if (!this.isEnabled()) {
+            return;
+        }
+        this.queue = new LinkedBlockingQueue<>(this.statsProperties.getRollup().getQueueCapacity());
+        if (this.stale || 0 == this.yieldRollupRepository.count()) {
+            this.stale = false;
+            this.rebuild();
+        }
+        this.ready = true;
+        if (null == this.worker) {
+            this.worker = new Thread(this::applyChanges, "yield-rollups");
+            this.worker.setDaemon(true);
+            this.worker.start();
+        }
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (null != this.worker) {
+            this.worker.interrupt();
+        }
+    }
+
+    /**
+     * Return the age of the oldest change not yet applied, the batch being applied included.
+     * @return the age in seconds, 0 when all changes are applied
+     */
+    private double getLag() {
+        final long now = System.nanoTime();
+        if (this.applying > 0) {
+            return (now - this.applyingCommitted) / 1e9;
+        }
+        final PendingChanges oldest = null == this.queue ? null : this.queue.peek();
+        return null == oldest ? 0 : (now - oldest.committed) / 1e9;
+    }
+
+    /**
+     * Return the number of transactions whose changes are not yet applied, the batch being applied included.
+     * @return the number of transactions
+     */
+    private double getPending() {
+        return (null == this.queue ? 0 : this.queue.size()) + this.applying;
+    }
+
+    /**
+     * Compute again the rollups of all varieties and years when the ROLLUP engine is used,
+     * then invalidate the cached results of all of them.
+     */
+    public synchronized void rebuild() {
+        if (!this.isEnabled()) {
+            return;
+        }
+        final List<VarietyYear> varietyYears = new ArrayList<>();
+        this.newTransaction().executeWithoutResult(status -> {
+            varietyYears.addAll(this.cropRepository.findAllVarietyYears());
+            varietyYears.forEach(this::refresh);
+        });
+        this.statsCache.invalidate(varietyYears);
+    }
+
+    /**
+     * Check if the rollups are used.
+     * @return <code>true</code> if the engine is ROLLUP
+     */
+    private boolean isEnabled() {
+        return StatsEngine.ROLLUP == this.statsProperties.getEngine();
+    }
+
+    /**
+     * Merge rollups to summarize yields by variety and year for a list of varieties, a list of locations and a list of years.
+     * <p>
+     *     The city partials of the requested locations are read with the location of the requested level,
+     *     then merged by variety, year and, if asked, location.
+     * </p>
+     * @param pLocationType the type of localisation
+     * @param pVarieties the list of varieties ids
+     * @param pLocations the list of locations ids
+     * @param pYears the list of years
+     * @param pByLocation <code>true</code> to keep one summary by location, <code>false</code> to pool locations
+     * @param pSketch <code>true</code> if the summaries must have a quantile sketch
+     * @return the yield summaries by variety id, year and, if asked, location id
+     */
+    public Map<YieldKey, YieldSummary> summarize(final LocationType pLocationType, final List<Integer> pVarieties, final List<Integer> pLocations, final List<Integer> pYears, final boolean pByLocation, final boolean pSketch) {
+        List<YieldAggregate> partials = new ArrayList<>();
+        switch (pLocationType) {
+            case CITY: {
+                partials = this.yieldRollupRepository.findPartialsByVarietiesAndCitiesAndYears(pVarieties, pLocations, pYears, pSketch);
+                break;
+            }
+            case DEPARTMENT: {
+                partials = this.yieldRollupRepository.findPartialsByVarietiesAndDepartmentsAndYears(pVarieties, pLocations, pYears, pSketch);
+                break;
+            }
+            case REGION: {
+                partials = this.yieldRollupRepository.findPartialsByVarietiesAndRegionsAndYears(pVarieties, pLocations, pYears, pSketch);
+                break;
+            }
+        }
+        final Map<YieldKey, YieldSummary> result = new HashMap<>();
+        partials.forEach(partial -> result.computeIfAbsent(pByLocation ? YieldKey.of(partial) : new YieldKey(partial.getVarietyId(), partial.getYear()),
+                key -> pSketch ? YieldSummary.withSketch() : new YieldSummary()).merge(YieldSummary.of(partial)));
+        return result;
+    }
+
+    /**
+     * Note a change of crop, plot or farm.
+     * @param pEvent the change
+     */
+    @EventListener
+    public void onEntityChange(final EntityChangeEvent pEvent) {
+        if (!this.isEnabled()) {
+            return;
+        }
+        final PendingChanges pending = this.getPendingChanges();
+        this.collect(pEvent.getBefore(), pending);
+        this.collect(pEvent.getAfter(), pending);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            this.enqueue(pending);
+        }
+    }
+
+    /**
+     * Note the state of an entity, before or after a change.
+     * <p>
+     *     Only what is needed to find the affected partials is kept, not the entity itself: the variety, the year
+     *     and the plot of a crop, the farm of a plot, the city of a farm.
+     * </p>
+     * @param pEntity the crop, plot or farm, may be null
+     * @param pPending the changes of the current transaction
+     */
+    private void collect(final Object pEntity, final PendingChanges pPending) {
+        if (pEntity instanceof Crop) {
+            final Crop crop = (Crop) pEntity;
+            if (null != crop.getVariety() && null != crop.getYear()) {
+                pPending.crops.computeIfAbsent(new VarietyYear(crop.getVariety(), crop.getYear()), varietyYear -> new HashSet<>()).add(crop.getPlotId());
+            }
+        } else if (pEntity instanceof Plot) {
+            final Plot plot = (Plot) pEntity;
+            if (null != plot.getId()) {
+                pPending.plots.computeIfAbsent(plot.getId(), id -> new HashSet<>()).add(plot.getFarmId());
+            }
+        } else if (pEntity instanceof Farm) {
+            final Farm farm = (Farm) pEntity;
+            if (null != farm.getId()) {
+                pPending.farms.computeIfAbsent(farm.getId(), id -> new HashSet<>()).add(farm.getCityCode());
+            }
+        }
+    }
+
+    /**
+     * Return the changes of the current transaction.
+     * <p>
+     *     The changes are bound to the transaction and a synchronization is registered to queue them
+     *     once the transaction is committed.
+     * </p>
+     * @return the pending changes
+     */
+    private PendingChanges getPendingChanges() {
+        PendingChanges result = (PendingChanges) TransactionSynchronizationManager.getResource(this);
+        if (null == result) {
+            result = new PendingChanges();
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                final PendingChanges pending = result;
+                TransactionSynchronizationManager.bindResource(this, pending);
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                    @Override
+                    public int getOrder() {
+                        return Ordered.HIGHEST_PRECEDENCE;
+                    }
+
+                    @Override
+                    public void afterCommit() {
+                        TransactionSynchronizationManager.unbindResourceIfPossible(YieldRollupService.this);
+                        enqueue(pending);
+                    }
+
+                    @Override
+                    public void afterCompletion(final int pStatus) {
+                        TransactionSynchronizationManager.unbindResourceIfPossible(YieldRollupService.this);
+                    }
+                });
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Queue the changes of a committed transaction.
+     * <p>
+     *     Before startup or when the queue is full, the changes are dropped and all rollups are marked to be computed again.
+     * </p>
+     * @param pPending the changes
+     */
+    private void enqueue(final PendingChanges pPending) {
+        pPending.committed = System.nanoTime();
+        final BlockingQueue<PendingChanges> pendings = this.queue;
+        if (null == pendings || !pendings.offer(pPending)) {
+            this.stale = true;
+        }
+    }
+
+    /**
+     * Apply queued changes until the worker thread is interrupted.
+     * <p>
+     *     The worker waits for a first transaction then takes all queued ones up to the batch size, so under a high
+     *     rate of small transactions a partial is computed again once by batch instead of once by transaction.
+     * </p>
+     * <p>
+     *     When a batch fails, the database being unavailable for instance, it is not discarded: it is applied again
+     *     after a delay doubled at each failure, up to one minute, with the transactions committed meanwhile.
+     *     Changes are never lost nor applied out of order, and the lag gauge shows how long they are delayed.
+     * </p>
+     * <p>
+     *     When changes were dropped, the queued ones and the batch are discarded and all rollups computed again.
+     *     The worker never waits more than the first retry delay, so it notices dropped changes even with an empty queue.
+     * </p>
+     */
+    private void applyChanges() {
+        final List<PendingChanges> batch = new ArrayList<>();
+        long delay = RETRY_DELAY;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                if (this.stale) {
+                    this.stale = false;
+                    this.queue.clear();
+                    batch.clear();
+                    this.rebuildStale();
+                }
+                if (batch.isEmpty()) {
+                    final PendingChanges first = this.queue.poll(RETRY_DELAY, TimeUnit.MILLISECONDS);
+                    if (null == first) {
+                        continue;
+                    }
+                    batch.add(first);
+                }
+                this.queue.drainTo(batch, Math.max(0, this.statsProperties.getRollup().getBatchSize() - batch.size()));
+                this.applyingCommitted = batch.get(0).committed;
+                this.applying = batch.size();
+                this.apply(batch);
+                batch.clear();
+                this.applying = 0;
+                delay = RETRY_DELAY;
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (final RuntimeException e) {
+                log.error("Yield rollups update failed, {} transactions retried in {} ms", batch.size(), delay, e);
+                try {
+                    Thread.sleep(delay);
+                } catch (final InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                delay = Math.min(MAX_RETRY_DELAY, 2 * delay);
+            }
+        }
+    }
+
+    /**
+     * Compute again all rollups after dropped changes, marking them to be computed again if it fails.
+     */
+    private void rebuildStale() {
+        log.warn("Yield rollups changes dropped, all rollups computed again");
+        try {
+            this.rebuild();
+        } catch (final RuntimeException e) {
+            this.stale = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Apply a batch of changes to the rollups in a new transaction.
+     * <p>
+     *     The method is synchronized with rebuild so a rebuild and a batch never delete and insert the same rollups together.
+     * </p>
+     * @param pBatch the changes, in commit order
+     */
+    private synchronized void apply(final List<PendingChanges> pBatch) {
+        final Set<VarietyYear> all = new HashSet<>();
+        final Map<VarietyYear, Set<Integer>> cities = new HashMap<>();
+        this.newTransaction().executeWithoutResult(status -> {
+            this.getDeltas(pBatch, all, cities);
+            all.forEach(this::refresh);
+            cities.forEach((varietyYear, ids) -> {
+                if (!all.contains(varietyYear)) {
+                    ids.forEach(city -> this.refresh(varietyYear, city));
+                }
+            });
+        });
+        final Set<VarietyYear> varietyYears = new HashSet<>(all);
+        varietyYears.addAll(cities.keySet());
+        this.statsCache.invalidate(varietyYears);
+    }
+
+    /**
+     * Turn the changes of a batch of transactions into the partials they affect.
+     * <p>
+     *     The plots of all changed crops are read together, then the farms of these plots and of the changed plots,
+     *     by chunks of ids, so a batch does not pay queries by crop.
+     * </p>
+     * @param pBatch the changes
+     * @param pAll the varieties and years whose partials must all be computed again
+     * @param pCities the cities whose partials must be computed again, by variety and year
+     */
+    private void getDeltas(final List<PendingChanges> pBatch, final Set<VarietyYear> pAll, final Map<VarietyYear, Set<Integer>> pCities) {
+        final Map<VarietyYear, Set<Long>> crops = new HashMap<>();
+        final Map<Long, Set<Long>> plots = new HashMap<>();
+        final Map<Long, Set<String>> farms = new HashMap<>();
+        for (final PendingChanges pending : pBatch) {
+            pending.crops.forEach((varietyYear, ids) -> crops.computeIfAbsent(varietyYear, key -> new HashSet<>()).addAll(ids));
+            pending.plots.forEach((plot, ids) -> plots.computeIfAbsent(plot, key -> new HashSet<>()).addAll(ids));
+            pending.farms.forEach((farm, codes) -> farms.computeIfAbsent(farm, key -> new HashSet<>()).addAll(codes));
+        }
+        final Set<Long> plotIds = new HashSet<>();
+        crops.values().forEach(plotIds::addAll);
+        plotIds.remove(null);
+        final Map<Long, Long> plotFarms = new HashMap<>();
+        StatsCache.findAll(plotIds, ids -> this.plotRepository.findAllById(ids)).forEach(plot -> plotFarms.put(plot.getId(), plot.getFarmId()));
+        final Set<Long> farmIds = new HashSet<>(plotFarms.values());
+        plots.values().forEach(farmIds::addAll);
+        farmIds.remove(null);
+        final Map<Long, Integer> farmCities = new HashMap<>();
+        StatsCache.findAll(farmIds, ids -> this.farmRepository.findAllById(ids)).forEach(farm -> farmCities.put(farm.getId(), this.getCityId(farm.getCityCode())));
+        crops.forEach((varietyYear, ids) -> ids.forEach(plot -> {
+            final Integer city = Optional.ofNullable(plot).map(plotFarms::get).map(farmCities::get).orElse(null);
+            this.addDelta(varietyYear, city, pAll, pCities);
+        }));
+        plots.forEach((plot, ids) -> {
+            final List<VarietyYear> varietyYears = this.cropRepository.findVarietyYearsByPlot(plot);
+            ids.forEach(farm -> {
+                final Integer city = Optional.ofNullable(farm).map(farmCities::get).orElse(null);
+                varietyYears.forEach(varietyYear -> this.addDelta(varietyYear, city, pAll, pCities));
+            });
+        });
+        farms.forEach((farm, codes) -> {
+            final List<VarietyYear> varietyYears = this.cropRepository.findVarietyYearsByFarm(farm);
+            codes.forEach(code -> {
+                final Integer city = this.getCityId(code);
+                varietyYears.forEach(varietyYear -> this.addDelta(varietyYear, city, pAll, pCities));
+            });
+        });
+    }
+
+    /**
+     * Note a partial to compute again.
+     * @param pVarietyYear the variety and year of the partial
+     * @param pCity the city id of the partial or <code>null</code> if it is unknown
+     * @param pAll the varieties and years whose partials must all be computed again
+     * @param pCities the cities whose partials must be computed again, by variety and year
+     */
+    private void addDelta(final VarietyYear pVarietyYear, final Integer pCity, final Set<VarietyYear> pAll, final Map<VarietyYear, Set<Integer>> pCities) {
+        if (null == pCity) {
+            pAll.add(pVarietyYear);
+        } else {
+            pCities.computeIfAbsent(pVarietyYear, varietyYear -> new HashSet<>()).add(pCity);
+        }
+    }
+
+    /**
+     * Return the city id of a farm.
+     * @param pCityCode the city code of the farm
+     * @return the city id or <code>null</code> if the farm has no city
+     */
+    private Integer getCityId(final String pCityCode) {
+        return null == pCityCode ? null : this.dictionaryService.getLocationId(pCityCode);
+    }
+
+    /**
+     * Compute again the rollups of a variety and a year, must be called inside a transaction.
+     * <p>
+     *     The crops are read once and each yield is added to the summary of its city, department and region.
+     *     The JDBC template uses the connection of the current JPA transaction.
+     * </p>
+     * @param pVarietyYear the variety and the year
+     */
+    private void refresh(final VarietyYear pVarietyYear) {
+        final Integer variety = this.dictionaryService.getVarietyId(pVarietyYear.getVariety());
+        final Integer year = pVarietyYear.getYear();
+        final Map<List<Integer>, YieldSummary> summaries = new HashMap<>();
+        this.cropRepository.forEachYieldByVarietyAndYear(variety, year, this.summarizer(summaries));
+        this.yieldRollupRepository.deleteByVarietyAndYear(variety, year);
+        this.insert(variety, year, summaries);
+    }
+
+    /**
+     * Compute again the rollups of a variety, a year and a city, must be called inside a transaction.
+     * @param pVarietyYear the variety and the year
+     * @param pCity the city id
+     */
+    private void refresh(final VarietyYear pVarietyYear, final Integer pCity) {
+        final Integer variety = this.dictionaryService.getVarietyId(pVarietyYear.getVariety());
+        final Integer year = pVarietyYear.getYear();
+        final Map<List<Integer>, YieldSummary> summaries = new HashMap<>();
+        this.cropRepository.forEachYieldByVarietyAndYearAndCity(variety, year, pCity, this.summarizer(summaries));
+        this.yieldRollupRepository.deleteByVarietyAndYearAndCity(variety, year, pCity);
+        this.insert(variety, year, summaries);
+    }
+
+    /**
+     * Return a handler adding each yield to the summary of its city, department and region.
+     * A missing location has a negative id.
+     * @param pSummaries the summaries by list of city, department and region ids
+     * @return the handler
+     */
+    private YieldRowHandler summarizer(final Map<List<Integer>, YieldSummary> pSummaries) {
+        return (cropId, plotId, farmId, cropYear, varietyId, city, department, region, yield, quantity, surface) ->
+                pSummaries.computeIfAbsent(List.of(city, department, region), location -> YieldSummary.withSketch()).addYield(yield, quantity, surface);
+    }
+
+    /**
+     * Insert the rollups of a variety and a year with a JDBC batch, a missing location is stored as NULL.
+     * @param pVariety the variety id
+     * @param pYear the year
+     * @param pSummaries the summaries by list of city, department and region ids
+     */
+    private void insert(final Integer pVariety, final Integer pYear, final Map<List<Integer>, YieldSummary> pSummaries) {
+        final List<Object[]> rows = new ArrayList<>();
+        pSummaries.forEach((location, summary) -> rows.add(new Object[] {
+                this.toColumn(location.get(0)), this.toColumn(location.get(1)), this.toColumn(location.get(2)), pVariety, pYear,
+                summary.getCount(), summary.getSum(), summary.getMin(), summary.getMax(),
+                summary.getQuantitySum(), summary.getSurfaceSum(), summary.getSketch().toBytes()
+        }));
+        this.jdbcTemplate.batchUpdate(YieldRollupRepository.INSERT, rows);
+    }
+
+    /**
+     * Return the column value of a location id.
+     * @param pLocation the location id, negative when the farm has no location
+     * @return the location id or <code>null</code>
+     */
+    private Integer toColumn(final int pLocation) {
+        return pLocation >= 0 ? pLocation : null;
+    }
+
+    /**
+     * Create a template running code in a new transaction.
+     * @return the transaction template
+     */
+    private TransactionTemplate newTransaction() {
+        final TransactionTemplate result = new TransactionTemplate(this.transactionManager);
+        result.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return result;
+    }
+
+    /**
+     * The crops, plots and farms changed by a transaction, before and after the changes.
+     */
+    private static class PendingChanges {
+
+        /**
+         * The plot ids of the changed crops by variety and year, with <code>null</code> for a crop without plot.
+         */
+        private final Map<VarietyYear, Set<Long>> crops = new HashMap<>();
+
+        /**
+         * The farm ids of the changed plots by plot id, with <code>null</code> for a plot without farm.
+         */
+        private final Map<Long, Set<Long>> plots = new HashMap<>();
+
+        /**
+         * The city codes of the changed farms by farm id, with <code>null</code> for a farm without city.
+         */
+        private final Map<Long, Set<String>> farms = new HashMap<>();
+
+        /**
+         * The commit time, from System.nanoTime().
+         */
+        private long committed;
+    }
+}
@@ -0,0 +1,52 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.services;
+
+/**
+ * A callback receiving the yields of crops, with their plot and farm, one by one.
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ */
+@FunctionalInterface
+public interface YieldRowHandler {
+
+    /**
+     * Receive the yield of a crop.
+     * @param pCropId the crop id
+     * @param pPlotId the plot id
+     * @param pFarmId the farm id
+     * @param pYear the year of the crop
+     * @param pVarietyId the id of the cropped variety
+     * @param pCityId the id of the city of the farm, -1 if there is none
+     * @param pDepartmentId the id of the department of the farm, -1 if there is none
+     * @param pRegionId the id of the region of the farm, -1 if there is none
+     * @param pYield the yield in hundredths of quintal by hectare
+     * @param pQuantity the quantity in hundredths of tonne
+     * @param pSurface the plot surface in hundredths of hectare
+     */
+    void accept(long pCropId, long pPlotId, long pFarmId, int pYear, int pVarietyId, int pCityId,
+                int pDepartmentId, int pRegionId, long pYield, long pQuantity, long pSurface);
+}
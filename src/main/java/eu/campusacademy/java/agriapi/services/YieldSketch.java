@@ -0,0 +1,238 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.services;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A mergeable quantile sketch of crop yields.
+ * <p>
+ *     Sorting every yield to find a median needs all of them in memory. This sketch, built like a DDSketch,
+ *     only counts yields in buckets whose bounds grow geometrically: the bucket of a yield <code>y</code> is
+ *     <code>ceil(log(y) / log(gamma))</code>. Any quantile is then estimated with a relative error lower than
+ *     {@link #RELATIVE_ACCURACY}, whatever the number of yields, and a sketch never holds more than a few hundred
+ *     counters for the yields met in agriculture.
+ * </p>
+ * <p>
+ *     Two sketches are merged by adding their counters, so the sketch of a region is exactly the merge of the
+ *     sketches of its departments, and a sketch is small enough to be stored with a rollup, see {@link #toBytes()}.
+ * </p>
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ * @see <a href="https://arxiv.org/abs/1908.10693">DDSketch: a fast and fully-mergeable quantile sketch with relative-error guarantees</a>
+ */
+@FieldDefaults(level= AccessLevel.PRIVATE)
+@ToString
+public class YieldSketch {
+
+    /**
+     * The maximum relative error of an estimated quantile.
+     */
+    public static final double RELATIVE_ACCURACY = 0.01;
+
+    /**
+     * The ratio between the upper and the lower bound of a bucket.
+     */
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    /**
+     * The number of yields
+     */
+    @Getter
+    long count;
+
+    /**
+     * The number of yields lower or equal to zero, they have no logarithm
+     */
+    long zeroCount;
+
+    /**
+     * The bucket index of the first counter
+     */
+    int offset;
+
+    /**
+     * The number of yields by bucket, from the bucket offset
+     */
+    long[] counts = new long[0];
+
+    /**
+     * Add a yield to this sketch.
+     * @param pYield the yield in hundredths
+     */
+    public void add(final long pYield) {
+        if (pYield <= 0) {
+            this.zeroCount++;
+            this.count++;
+        } else {
+            this.addToBucket((int) Math.ceil(Math.log(pYield) / LOG_GAMMA), 1);
+        }
+    }
+
+    /**
+     * Add all the yields of an other sketch to this one.
+     * @param pSketch the other sketch
+     */
+    public void merge(final YieldSketch pSketch) {
+        this.zeroCount += pSketch.zeroCount;
+        this.count += pSketch.zeroCount;
+        for (int i = 0; i < pSketch.counts.length; i++) {
+            if (0 != pSketch.counts[i]) {
+                this.addToBucket(pSketch.offset + i, pSketch.counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Estimate a quantile of the yields.
+     * @param pQuantile the quantile, between 0 and 1, 0.5 for the median
+     * @return the estimated yield in hundredths, or <code>null</code> if the sketch is empty
+     */
+    public Long getQuantile(final double pQuantile) {
+        Long result = null;
+        if (this.count > 0) {
+            final long rank = (long) Math.floor(pQuantile * (this.count - 1));
+            long seen = this.zeroCount;
+            if (rank < seen) {
+                result = 0L;
+            }
+            for (int i = 0; null == result && i < this.counts.length; i++) {
+                seen += this.counts[i];
+                if (rank < seen) {
+                    result = Math.round(2 * Math.pow(GAMMA, this.offset + i) / (GAMMA + 1));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Serialize this sketch.
+     * <p>
+     *     Counters are written as variable length integers, most of them take one or two bytes.
+     * </p>
+     * @return the bytes of the sketch
+     */
+    public byte[] toBytes() {
+        int first = 0;
+        int last = this.counts.length;
+        while (first < last && 0 == this.counts[first]) {
+            first++;
+        }
+        while (last > first && 0 == this.counts[last - 1]) {
+            last--;
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(16 + last - first);
+        writeVarLong(out, this.zeroCount);
+        writeVarLong(out, this.offset + first);
+        writeVarLong(out, last - first);
+        for (int i = first; i < last; i++) {
+            writeVarLong(out, this.counts[i]);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Deserialize a sketch.
+     * @param pBytes the bytes of a sketch, written by {@link #toBytes()}
+     * @return the sketch
+     */
+    public static YieldSketch of(final byte[] pBytes) {
+        final ByteBuffer in = ByteBuffer.wrap(pBytes);
+        final YieldSketch result = new YieldSketch();
+        result.zeroCount = readVarLong(in);
+        result.offset = (int) readVarLong(in);
+        result.counts = new long[(int) readVarLong(in)];
+        result.count = result.zeroCount;
+        for (int i = 0; i < result.counts.length; i++) {
+            result.counts[i] = readVarLong(in);
+            result.count += result.counts[i];
+        }
+        return result;
+    }
+
+    /**
+     * Add a number of yields to a bucket, growing the counters when the bucket is out of them.
+     * @param pIndex the bucket index
+     * @param pCount the number of yields
+     */
+    private void addToBucket(final int pIndex, final long pCount) {
+        if (0 == this.counts.length) {
+            this.offset = pIndex;
+            this.counts = new long[16];
+        } else if (pIndex < this.offset) {
+            final int shift = Math.max(this.offset - pIndex, 16);
+            final long[] grown = new long[this.counts.length + shift];
+            System.arraycopy(this.counts, 0, grown, shift, this.counts.length);
+            this.counts = grown;
+            this.offset -= shift;
+        } else if (pIndex - this.offset >= this.counts.length) {
+            this.counts = Arrays.copyOf(this.counts, Math.max(pIndex - this.offset + 1, this.counts.length * 2));
+        }
+        this.counts[pIndex - this.offset] += pCount;
+        this.count += pCount;
+    }
+
+    /**
+     * Write a positive long with 7 bits by byte, the high bit telling if an other byte follows.
+     * @param pOut the output
+     * @param pValue the value
+     */
+    private static void writeVarLong(final ByteArrayOutputStream pOut, final long pValue) {
+        long value = pValue;
+        while ((value & ~0x7FL) != 0) {
+            pOut.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        pOut.write((int) value);
+    }
+
+    /**
+     * Read a positive long written by {@link #writeVarLong(ByteArrayOutputStream, long)}.
+     * @param pIn the input
+     * @return the value
+     */
+    private static long readVarLong(final ByteBuffer pIn) {
+        long result = 0;
+        int shift = 0;
+        byte read;
+        do {
+            read = pIn.get();
+            result |= (long) (read & 0x7F) << shift;
+            shift += 7;
+        } while ((read & 0x80) != 0);
+        return result;
+    }
+}
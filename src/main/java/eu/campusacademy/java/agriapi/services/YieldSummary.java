@@ -0,0 +1,272 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.services;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Summary of the yields of a set of crops.
+ * <p>
+ *     A summary is filled crop by crop with {@link #add(BigDecimal, BigDecimal)} or built from a SQL aggregate
+ *     with {@link #of(YieldAggregate)}. It holds every value needed by all statistic types.
+ *     The quantile sketch needed by MEDIAN, P10 and P90 is only kept by summaries built with {@link #withSketch()}
+ *     or from an aggregate having one, adding a yield to a sketch costs a logarithm.
+ * </p>
+ * <p>
+ *     Yields are stored as fixed-point numbers, a long counting hundredths of quintal by hectare, so adding a crop
+ *     only does long arithmetic in one pass without creating any object. BigDecimal is only used to return
+ *     the value of a statistic. Quantities and surfaces are expected with two decimals like in the database,
+ *     yields are rounded up to the hundredth exactly like <code>quantity * 10 / surface</code> with RoundingMode.UP.
+ * </p>
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ */
+@FieldDefaults(level= AccessLevel.PRIVATE)
+@NoArgsConstructor
+@ToString
+public class YieldSummary {
+
+    /**
+     * Number of decimals of a yield, a quantity and a surface.
+     */
+    public static final int YIELD_SCALE = 2;
+
+    /**
+     * The number of crops
+     */
+    @Getter
+    long count;
+
+    /**
+     * The sum of yields in hundredths
+     */
+    @Getter
+    long sum;
+
+    /**
+     * The minimum yield in hundredths
+     */
+    @Getter
+    long min = Long.MAX_VALUE;
+
+    /**
+     * The maximum yield in hundredths
+     */
+    @Getter
+    long max = Long.MIN_VALUE;
+
+    /**
+     * The sum of quantities in hundredths of tonne
+     */
+    @Getter
+    long quantitySum;
+
+    /**
+     * The sum of surfaces in hundredths of hectare
+     */
+    @Getter
+    long surfaceSum;
+
+    /**
+     * The quantile sketch of yields, null when quantiles are not needed
+     */
+    @Getter
+    YieldSketch sketch;
+
+    /**
+     * Build an empty summary keeping a quantile sketch of its yields.
+     * @return the summary
+     */
+    public static YieldSummary withSketch() {
+        final YieldSummary result = new YieldSummary();
+        result.sketch = new YieldSketch();
+        return result;
+    }
+
+    /**
+     * Build a summary from a SQL aggregate.
+     * @param pAggregate the aggregate, yields are in hundredths
+     * @return the summary
+     */
+    public static YieldSummary of(final YieldAggregate pAggregate) {
+        final YieldSummary result = new YieldSummary();
+        result.count = pAggregate.getYieldCount();
+        result.sum = pAggregate.getYieldSum();
+        result.min = pAggregate.getYieldMin();
+        result.max = pAggregate.getYieldMax();
+        result.quantitySum = pAggregate.getQuantitySum();
+        result.surfaceSum = pAggregate.getSurfaceSum();
+        if (null != pAggregate.getYieldSketch()) {
+            result.sketch = YieldSketch.of(pAggregate.getYieldSketch());
+        }
+        return result;
+    }
+
+    /**
+     * Convert a quantity or a surface to hundredths.
+     * @param pValue the value with at most two decimals
+     * @return the value in hundredths
+     * @exception ArithmeticException if the value has more than two decimals or is too large
+     */
+    public static long toHundredths(final BigDecimal pValue) throws ArithmeticException {
+        return pValue.setScale(YIELD_SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Calcul the yield of a crop, rounded up like RoundingMode.UP.
+     * @param pQuantity the quantity in hundredths of tonne
+     * @param pSurface the surface in hundredths of hectare
+     * @return the yield in hundredths of quintal by hectare
+     * @exception ArithmeticException if the surface is zero or the quantity too large
+     */
+    public static long getYield(final long pQuantity, final long pSurface) throws ArithmeticException {
+        final long dividend = Math.multiplyExact(pQuantity, 1000L);
+        long result = dividend / pSurface;
+        if (0 != dividend % pSurface) {
+            result += ((dividend < 0) == (pSurface < 0)) ? 1 : -1;
+        }
+        return result;
+    }
+
+    /**
+     * Add a crop to this summary.
+     * @param pQuantity the quantity in tonne
+     * @param pSurface the surface in hectare
+     */
+    public void add(final BigDecimal pQuantity, final BigDecimal pSurface) {
+        this.add(toHundredths(pQuantity), toHundredths(pSurface));
+    }
+
+    /**
+     * Add a crop to this summary.
+     * @param pQuantity the quantity in hundredths of tonne
+     * @param pSurface the surface in hundredths of hectare
+     */
+    public void add(final long pQuantity, final long pSurface) {
+        this.addYield(getYield(pQuantity, pSurface), pQuantity, pSurface);
+    }
+
+    /**
+     * Add a crop to this summary when its yield is already computed.
+     * @param pYield the yield in hundredths
+     * @param pQuantity the quantity in hundredths of tonne
+     * @param pSurface the surface in hundredths of hectare
+     */
+    public void addYield(final long pYield, final long pQuantity, final long pSurface) {
+        this.count++;
+        this.quantitySum = Math.addExact(this.quantitySum, pQuantity);
+        this.surfaceSum = Math.addExact(this.surfaceSum, pSurface);
+        this.sum = Math.addExact(this.sum, pYield);
+        this.min = Math.min(this.min, pYield);
+        this.max = Math.max(this.max, pYield);
+        if (null != this.sketch) {
+            this.sketch.add(pYield);
+        }
+    }
+
+    /**
+     * Add all the crops of an other summary to this one.
+     * <p>
+     *     The quantile sketch is only kept if both summaries have one.
+     * </p>
+     * @param pSummary the other summary
+     */
+    public void merge(final YieldSummary pSummary) {
+        this.count += pSummary.count;
+        this.sum = Math.addExact(this.sum, pSummary.sum);
+        this.min = Math.min(this.min, pSummary.min);
+        this.max = Math.max(this.max, pSummary.max);
+        this.quantitySum = Math.addExact(this.quantitySum, pSummary.quantitySum);
+        this.surfaceSum = Math.addExact(this.surfaceSum, pSummary.surfaceSum);
+        if (null != this.sketch && null != pSummary.sketch) {
+            this.sketch.merge(pSummary.sketch);
+        } else {
+            this.sketch = null;
+        }
+    }
+
+    /**
+     * Return the value of a statistic.
+     * @param pType the statistic type
+     * @return the value of statistic or <code>null</code> if there is no crop or if a quantile is asked without sketch
+     */
+    public BigDecimal getValue(final StatisticType pType) {
+        BigDecimal result = null;
+        if (this.count > 0) {
+            switch (pType) {
+                case MIN: {
+                    result = BigDecimal.valueOf(this.min, YIELD_SCALE);
+                    break;
+                }
+                case MAX: {
+                    result = BigDecimal.valueOf(this.max, YIELD_SCALE);
+                    break;
+                }
+                case AVERAGE: {
+                    result = BigDecimal.valueOf(this.sum, YIELD_SCALE).divide(BigDecimal.valueOf(this.count), RoundingMode.UP);
+                    break;
+                }
+                case WEIGHTED_AVERAGE: {
+                    if (0 != this.surfaceSum) {
+                        result = BigDecimal.valueOf(getYield(this.quantitySum, this.surfaceSum), YIELD_SCALE);
+                    }
+                    break;
+                }
+                case MEDIAN: {
+                    result = this.getQuantile(0.5);
+                    break;
+                }
+                case P10: {
+                    result = this.getQuantile(0.1);
+                    break;
+                }
+                case P90: {
+                    result = this.getQuantile(0.9);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Estimate a quantile of yields with the sketch, bounded by the exact minimum and maximum.
+     * @param pQuantile the quantile, between 0 and 1
+     * @return the quantile or <code>null</code> without sketch
+     */
+    private BigDecimal getQuantile(final double pQuantile) {
+        BigDecimal result = null;
+        if (null != this.sketch) {
+            final long quantile = Math.max(this.min, Math.min(this.max, this.sketch.getQuantile(pQuantile)));
+            result = BigDecimal.valueOf(quantile, YIELD_SCALE);
+        }
+        return result;
+    }
+}
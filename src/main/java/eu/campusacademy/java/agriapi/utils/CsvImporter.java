@@ -0,0 +1,367 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.utils;
+
+import eu.campusacademy.java.agriapi.data.domain.Crop;
+import eu.campusacademy.java.agriapi.data.domain.Farm;
+import eu.campusacademy.java.agriapi.data.domain.ImportCheckpoint;
+import eu.campusacademy.java.agriapi.data.domain.Plot;
+import eu.campusacademy.java.agriapi.data.repositories.CropRepository;
+import eu.campusacademy.java.agriapi.data.repositories.FarmRepository;
+import eu.campusacademy.java.agriapi.data.repositories.ImportCheckpointRepository;
+import eu.campusacademy.java.agriapi.data.repositories.PlotRepository;
+import eu.campusacademy.java.agriapi.services.FarmCode;
+import eu.campusacademy.java.agriapi.services.ImportProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  Utility component used to import CSV files at startup.
+ *  <p>
+ *     When agriapi.import.csv-directory is set, the files farms.csv, plots.csv and crops.csv of this directory are
+ *     imported in this order. Each file starts with a header line and has the following fields:
+ *     <ul>
+ *         <li>farms.csv: pacage code, city code, department code, region code</li>
+ *         <li>plots.csv: pacage code, plot number in the farm, surface</li>
+ *         <li>crops.csv: pacage code, plot number in the farm, year, variety, quantity</li>
+ *     </ul>
+ *     Farms and plots are found by their pacage code and plot number through maps of ids held in memory:
+ *     the farms one is loaded from the database and the plots one, as plot numbers aren't saved in the database,
+ *     is kept in the file plots.idmap of the directory. The memory used depends on the number of farms and plots,
+ *     not on the size of the files, which are streamed.
+ *  </p>
+ *  <p>
+ *     Lines are saved by batches of agriapi.import.flush-size lines, each in a transaction which also saves
+ *     the offset of the next line in a checkpoint. An interrupted import starts again from its checkpoint.
+ *     Lines with missing or invalid fields, or an unknown farm or plot, are rejected and counted.
+ *     Once a file is fully imported, a file with the same name is ignored until its checkpoint is deleted.
+ *  </p>
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CsvImporter implements ApplicationRunner {
+
+    private static final long PLOT_NUMBERS = 100000;
+
+    private final FarmRepository farmRepository;
+    private final PlotRepository plotRepository;
+    private final CropRepository cropRepository;
+    private final ImportCheckpointRepository importCheckpointRepository;
+    private final ImportProperties importProperties;
+    private final PlatformTransactionManager transactionManager;
+
+    @Override
+    public void run(final ApplicationArguments pArgs) throws Exception {
+        if (null != this.importProperties.getCsvDirectory()) {
+            final Path directory = Paths.get(this.importProperties.getCsvDirectory());
+            final IdMap farms = new IdMap();
+            for (final FarmCode farm : this.farmRepository.findAllCodes()) {
+                this.putFarm(farms, farm.getPacageCode(), farm.getId());
+            }
+            try (IdMap plots = IdMap.open(directory.resolve("plots.idmap"))) {
+                this.importFile(directory.resolve("farms.csv"), new FarmBatch(farms));
+                this.importFile(directory.resolve("plots.csv"), new PlotBatch(farms, plots));
+                this.importFile(directory.resolve("crops.csv"), new CropBatch(plots));
+            }
+        }
+    }
+
+    /**
+     * Import a file from its checkpoint.
+     * @param pFile the file
+     * @param pBatch the batch of entities read from the file
+     * @throws IOException if the file can't be read
+     */
+    private void importFile(final Path pFile, final Batch<?> pBatch) throws IOException {
+        if (Files.exists(pFile)) {
+            final long start = System.nanoTime();
+            final String name = pFile.getFileName().toString();
+            final ImportCheckpoint checkpoint = this.importCheckpointRepository.findById(name)
+                    .orElse(new ImportCheckpoint(name, 0L, 0L, 0L));
+            final long firstRow = checkpoint.getImportedRows();
+            try (CsvReader reader = new CsvReader(pFile, checkpoint.getNextOffset(), this.importProperties.getCsvBufferSize(),
+                    this.importProperties.getCsvSeparator(), pBatch.fields)) {
+                if (0 == checkpoint.getNextOffset()) {
+                    reader.next();
+                }
+                long rejected = 0;
+                while (reader.next()) {
+                    if (!this.read(reader, pBatch)) {
+                        rejected++;
+                    }
+                    if (pBatch.entities.size() + rejected >= this.importProperties.getFlushSize()) {
+                        this.save(pBatch, checkpoint, reader.getOffset(), rejected);
+                        rejected = 0;
+                    }
+                }
+                this.save(pBatch, checkpoint, reader.getOffset(), rejected);
+            }
+            final long duration = System.nanoTime() - start;
+            final long rows = checkpoint.getImportedRows() - firstRow;
+            log.info("{}: {} rows imported, {} lines rejected in total, {} rows/s", name, rows, checkpoint.getRejectedLines(),
+                    0 == duration ? rows : rows * 1_000_000_000 / duration);
+        }
+    }
+
+    /**
+     * Read the current line into a batch.
+     * @param pReader the CSV reader
+     * @param pBatch the batch
+     * @return <code>false</code> if the line is rejected
+     */
+    private boolean read(final CsvReader pReader, final Batch<?> pBatch) {
+        boolean result = false;
+        if (pReader.getFieldCount() == pBatch.fields) {
+            try {
+                result = pBatch.add(pReader);
+            } catch (final NumberFormatException | ArithmeticException e) {
+                result = false;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Save a batch and the checkpoint of its file in one transaction.
+     * @param pBatch the batch
+     * @param pCheckpoint the checkpoint
+     * @param pOffset the offset of the next line
+     * @param pRejected the number of rejected lines since the previous save
+     */
+    private void save(final Batch<?> pBatch, final ImportCheckpoint pCheckpoint, final long pOffset, final long pRejected) {
+        new TransactionTemplate(this.transactionManager).executeWithoutResult(status -> {
+            pBatch.save();
+            pCheckpoint.setNextOffset(pOffset);
+            pCheckpoint.setImportedRows(pCheckpoint.getImportedRows() + pBatch.entities.size());
+            pCheckpoint.setRejectedLines(pCheckpoint.getRejectedLines() + pRejected);
+            this.importCheckpointRepository.save(pCheckpoint);
+        });
+        pBatch.entities.clear();
+        pBatch.keys.clear();
+    }
+
+    /**
+     * Put the id of a farm in the farms map.
+     * @param pFarms the farms map
+     * @param pPacageCode the pacage code, its digits are the key like with CsvReader.getDigits
+     * @param pId the farm id
+     */
+    private void putFarm(final IdMap pFarms, final String pPacageCode, final Long pId) {
+        long key = -1;
+        for (int i = 0; null != pPacageCode && i < pPacageCode.length(); i++) {
+            final int digit = pPacageCode.charAt(i) - '0';
+            if (digit >= 0 && digit <= 9) {
+                key = Math.addExact(Math.multiplyExact(Math.max(key, 0), 10), digit);
+            }
+        }
+        if (key >= 0) {
+            pFarms.put(key, pId);
+        }
+    }
+
+    /**
+     * Return the key of a plot.
+     * @param pReader the CSV reader, on a line starting with a pacage code and a plot number
+     * @return the key
+     */
+    private static long getPlotKey(final CsvReader pReader) {
+        final long number = pReader.getLong(1);
+        if (number < 0 || number >= PLOT_NUMBERS) {
+            throw new NumberFormatException("Invalid plot number " + number);
+        }
+        return Math.addExact(Math.multiplyExact(pReader.getDigits(0), PLOT_NUMBERS), number);
+    }
+
+    /**
+     * A batch of entities read from a file.
+     * @param <T> the entity type
+     */
+    private abstract static class Batch<T> {
+
+        /**
+         * The number of fields of a line.
+         */
+        final int fields;
+
+        /**
+         * The entities to save.
+         */
+        final List<T> entities = new ArrayList<>();
+
+        /**
+         * The key of each entity, for entities put in an id map.
+         */
+        final List<Long> keys = new ArrayList<>();
+
+        Batch(final int pFields) {
+            this.fields = pFields;
+        }
+
+        /**
+         * Read an entity from the current line.
+         * @param pReader the CSV reader
+         * @return <code>false</code> if the line is rejected
+         */
+        abstract boolean add(CsvReader pReader);
+
+        /**
+         * Save the entities, in the current transaction.
+         */
+        abstract void save();
+    }
+
+    /**
+     * A batch of farms.
+     */
+    private class FarmBatch extends Batch<Farm> {
+
+        private final IdMap farms;
+
+        /**
+         * The keys of the farms of the batch, to reject a pacage code found twice before the batch is saved.
+         */
+        private IdMap batchKeys = new IdMap();
+
+        FarmBatch(final IdMap pFarms) {
+            super(4);
+            this.farms = pFarms;
+        }
+
+        @Override
+        boolean add(final CsvReader pReader) {
+            final long key = pReader.getDigits(0);
+            final boolean result = key >= 0 && IdMap.NOT_FOUND == this.farms.get(key) && IdMap.NOT_FOUND == this.batchKeys.get(key);
+            if (result) {
+                this.entities.add(new Farm(null, pReader.getString(0), pReader.getString(1), pReader.getString(2), pReader.getString(3)));
+                this.batchKeys.put(key, this.keys.size());
+                this.keys.add(key);
+            }
+            return result;
+        }
+
+        @Override
+        void save() {
+            farmRepository.saveAll(this.entities);
+            for (int i = 0; i < this.entities.size(); i++) {
+                this.farms.put(this.keys.get(i), this.entities.get(i).getId());
+            }
+            this.batchKeys = new IdMap();
+        }
+    }
+
+    /**
+     * A batch of plots.
+     */
+    private class PlotBatch extends Batch<Plot> {
+
+        private final IdMap farms;
+        private final IdMap plots;
+
+        /**
+         * The keys of the plots of the batch, to reject a pacage code and plot number found twice before the batch is saved.
+         */
+        private IdMap batchKeys = new IdMap();
+
+        PlotBatch(final IdMap pFarms, final IdMap pPlots) {
+            super(3);
+            this.farms = pFarms;
+            this.plots = pPlots;
+        }
+
+        @Override
+        boolean add(final CsvReader pReader) {
+            final long farmId = this.farms.get(pReader.getDigits(0));
+            final long key = getPlotKey(pReader);
+            final boolean result = IdMap.NOT_FOUND != farmId && IdMap.NOT_FOUND == this.batchKeys.get(key);
+            if (result) {
+                final Plot plot = new Plot(null, farmId, pReader.getDecimal(2));
+                this.batchKeys.put(key, this.keys.size());
+                this.keys.add(key);
+                this.entities.add(plot);
+            }
+            return result;
+        }
+
+        @Override
+        void save() {
+            plotRepository.saveAll(this.entities);
+            for (int i = 0; i < this.entities.size(); i++) {
+                this.plots.put(this.keys.get(i), this.entities.get(i).getId());
+            }
+            this.batchKeys = new IdMap();
+            try {
+                // the ids are on disk before the commit, a rolled back batch is imported again with new ids
+                this.plots.sync();
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * A batch of crops.
+     */
+    private class CropBatch extends Batch<Crop> {
+
+        private final IdMap plots;
+
+        CropBatch(final IdMap pPlots) {
+            super(5);
+            this.plots = pPlots;
+        }
+
+        @Override
+        boolean add(final CsvReader pReader) {
+            final long plotId = this.plots.get(getPlotKey(pReader));
+            final boolean result = IdMap.NOT_FOUND != plotId && null != pReader.getString(3);
+            if (result) {
+                this.entities.add(new Crop(null, plotId, Math.toIntExact(pReader.getLong(2)), pReader.getString(3), pReader.getDecimal(4)));
+            }
+            return result;
+        }
+
+        @Override
+        void save() {
+            cropRepository.saveAll(this.entities);
+        }
+    }
+}
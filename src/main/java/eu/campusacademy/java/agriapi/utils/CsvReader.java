@@ -0,0 +1,308 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A streaming CSV file reader.
+ * <p>
+ *     The file is read with NIO through one buffer, whatever its size. Lines are split on bytes, and fields are
+ *     parsed directly from the buffer: numbers never go through a String and the strings of a field, which are
+ *     mostly the same few varieties or location codes, are reused from a small pool.
+ *     The offset of the end of each line is known, so reading can start again after the last imported line.
+ * </p>
+ * <p>
+ *     Fields are separated by one byte and can't be quoted. Lines end with "\n" or "\r\n" and can't be longer
+ *     than the buffer.
+ * </p>
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ */
+public class CsvReader implements Closeable {
+
+    private static final int POOL_SIZE = 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final byte[] bytes;
+    private final byte separator;
+    private final int[] starts;
+    private final int[] ends;
+    private final String[] pool = new String[POOL_SIZE];
+    private int fieldCount;
+    private long bufferOffset;
+    private long offset;
+    private boolean eof;
+
+    /**
+     * Open a file.
+     * @param pFile the file
+     * @param pOffset the offset of the first line to read
+     * @param pBufferSize the buffer size, the maximum length of a line
+     * @param pSeparator the field separator
+     * @param pMaxFields the maximum number of fields, next fields of a line are ignored
+     * @throws IOException if the file can't be opened
+     */
+    public CsvReader(final Path pFile, final long pOffset, final int pBufferSize, final char pSeparator, final int pMaxFields) throws IOException {
+        this.channel = FileChannel.open(pFile, StandardOpenOption.READ);
+        this.channel.position(pOffset);
+        this.buffer = ByteBuffer.allocate(pBufferSize);
+        this.buffer.limit(0);
+        this.bytes = this.buffer.array();
+        this.separator = (byte) pSeparator;
+        this.starts = new int[pMaxFields];
+        this.ends = new int[pMaxFields];
+        this.bufferOffset = pOffset;
+        this.offset = pOffset;
+    }
+
+    /**
+     * Read the next line.
+     * @return <code>false</code> at the end of the file
+     * @throws IOException if the file can't be read
+     */
+    public boolean next() throws IOException {
+        int start = this.buffer.position();
+        int end = this.indexOfNewLine(start);
+        while (end < 0 && !this.eof) {
+            if (0 == start && this.buffer.limit() == this.buffer.capacity()) {
+                throw new IllegalStateException("Line longer than " + this.buffer.capacity() + " bytes at offset " + this.offset);
+            }
+            this.bufferOffset += start;
+            this.buffer.compact();
+            this.eof = this.channel.read(this.buffer) < 0;
+            this.buffer.flip();
+            start = 0;
+            end = this.indexOfNewLine(start);
+        }
+        int next = end + 1;
+        if (end < 0) {
+            if (start == this.buffer.limit()) {
+                return false;
+            }
+            end = this.buffer.limit();
+            next = end;
+        }
+        if (end > start && '\r' == this.bytes[end - 1]) {
+            end--;
+        }
+        this.split(start, end);
+        this.buffer.position(next);
+        this.offset = this.bufferOffset + next;
+        return true;
+    }
+
+    /**
+     * Return the offset of the end of the current line, the offset of the next line.
+     * @return the offset in bytes
+     */
+    public long getOffset() {
+        return this.offset;
+    }
+
+    /**
+     * Return the number of fields of the current line.
+     * @return the number of fields
+     */
+    public int getFieldCount() {
+        return this.fieldCount;
+    }
+
+    /**
+     * Return a field as a string.
+     * @param pField the field index
+     * @return the field value, null if the field is empty
+     */
+    public String getString(final int pField) {
+        final int start = this.starts[pField];
+        final int length = this.ends[pField] - start;
+        if (0 == length) {
+            return null;
+        }
+        int hash = 0;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + this.bytes[i];
+        }
+        final int index = (hash ^ (hash >>> 16)) & (POOL_SIZE - 1);
+        String result = this.pool[index];
+        if (null == result || !this.matches(result, start, length)) {
+            result = new String(this.bytes, start, length, StandardCharsets.UTF_8);
+            this.pool[index] = result;
+        }
+        return result;
+    }
+
+    /**
+     * Return a field as an integer.
+     * @param pField the field index
+     * @return the field value
+     * @throws NumberFormatException if the field isn't an integer
+     */
+    public long getLong(final int pField) throws NumberFormatException {
+        final int start = this.starts[pField];
+        final int end = this.ends[pField];
+        final boolean negative = end > start && '-' == this.bytes[start];
+        if (end == (negative ? start + 1 : start)) {
+            throw new NumberFormatException("Empty field " + pField);
+        }
+        long result = 0;
+        for (int i = negative ? start + 1 : start; i < end; i++) {
+            result = Math.addExact(Math.multiplyExact(result, 10), this.digit(i, pField));
+        }
+        return negative ? -result : result;
+    }
+
+    /**
+     * Return a field as a decimal.
+     * <p>
+     *     Both "." and "," are accepted as decimal separator.
+     * </p>
+     * @param pField the field index
+     * @return the field value
+     * @throws NumberFormatException if the field isn't a decimal
+     */
+    public BigDecimal getDecimal(final int pField) throws NumberFormatException {
+        final int start = this.starts[pField];
+        final int end = this.ends[pField];
+        final boolean negative = end > start && '-' == this.bytes[start];
+        long unscaled = 0;
+        int scale = -1;
+        int digits = 0;
+        for (int i = negative ? start + 1 : start; i < end; i++) {
+            if (scale < 0 && ('.' == this.bytes[i] || ',' == this.bytes[i])) {
+                scale = 0;
+            } else {
+                unscaled = Math.addExact(Math.multiplyExact(unscaled, 10), this.digit(i, pField));
+                digits++;
+                if (scale >= 0) {
+                    scale++;
+                }
+            }
+        }
+        if (0 == digits) {
+            throw new NumberFormatException("Empty field " + pField);
+        }
+        return BigDecimal.valueOf(negative ? -unscaled : unscaled, Math.max(scale, 0));
+    }
+
+    /**
+     * Return the digits of a field as a number, other characters are ignored.
+     * <p>
+     *     For example "49-85456-98" gives 498545698.
+     * </p>
+     * @param pField the field index
+     * @return the number, -1 if there is no digit
+     */
+    public long getDigits(final int pField) {
+        long result = -1;
+        for (int i = this.starts[pField]; i < this.ends[pField]; i++) {
+            final int digit = this.bytes[i] - '0';
+            if (digit >= 0 && digit <= 9) {
+                result = Math.addExact(Math.multiplyExact(Math.max(result, 0), 10), digit);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    /**
+     * Split a line into fields.
+     * @param pStart the index of the first byte of the line
+     * @param pEnd the index after the last byte of the line
+     */
+    private void split(final int pStart, final int pEnd) {
+        this.fieldCount = 0;
+        int start = pStart;
+        for (int i = pStart; i <= pEnd && this.fieldCount < this.starts.length; i++) {
+            if (i == pEnd || this.separator == this.bytes[i]) {
+                this.starts[this.fieldCount] = start;
+                this.ends[this.fieldCount] = i;
+                this.fieldCount++;
+                start = i + 1;
+            }
+        }
+    }
+
+    /**
+     * Return the index of the next new line in the buffer.
+     * @param pFrom the index to start from
+     * @return the index, -1 if there is no new line
+     */
+    private int indexOfNewLine(final int pFrom) {
+        for (int i = pFrom; i < this.buffer.limit(); i++) {
+            if ('\n' == this.bytes[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Return the value of a digit.
+     * @param pIndex the index of the byte
+     * @param pField the field index, for the error message
+     * @return the digit value
+     * @throws NumberFormatException if the byte isn't a digit
+     */
+    private int digit(final int pIndex, final int pField) throws NumberFormatException {
+        final int result = this.bytes[pIndex] - '0';
+        if (result < 0 || result > 9) {
+            throw new NumberFormatException("Invalid character '" + (char) this.bytes[pIndex] + "' in field " + pField);
+        }
+        return result;
+    }
+
+    /**
+     * Check if a pooled string has the ASCII bytes of a field.
+     * @param pValue the pooled string
+     * @param pStart the index of the first byte of the field
+     * @param pLength the length of the field
+     * @return <code>true</code> if they are the same
+     */
+    private boolean matches(final String pValue, final int pStart, final int pLength) {
+        if (pValue.length() != pLength) {
+            return false;
+        }
+        for (int i = 0; i < pLength; i++) {
+            if (pValue.charAt(i) != this.bytes[pStart + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
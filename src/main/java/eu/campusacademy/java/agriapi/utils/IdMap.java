@@ -0,0 +1,240 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A map of long keys to ids.
+ * <p>
+ *     Keys and ids are stored in two arrays of primitive longs with open addressing, so an entry takes 32 bytes
+ *     at most and no object is created by a lookup.
+ *     The map can be backed by a file: new entries are appended to the file by sync, and read back when the map is
+ *     opened again. When a key is put several times, the last id wins.
+ * </p>
+ *
+ * @author <a href="mailto:naudeon50160@gmail.com">Nicolas Audéon</a>
+ * @see <a href="https://en.wikipedia.org/wiki/Open_addressing">Open addressing</a>
+ */
+public class IdMap implements Closeable {
+
+    /**
+     * Value returned by get for an unknown key.
+     */
+    public static final long NOT_FOUND = -1L;
+
+    private static final long FREE = Long.MIN_VALUE;
+    private static final int ENTRY_SIZE = 2 * Long.BYTES;
+
+    private long[] keys;
+    private long[] ids;
+    private int size;
+    private final FileChannel file;
+    private final ByteBuffer pending = ByteBuffer.allocate(4096 * ENTRY_SIZE);
+
+    /**
+     * Create an empty map held in memory only.
+     */
+    public IdMap() {
+        this(null);
+    }
+
+    /**
+     * Create a map backed by a file.
+     * @param pFile the opened file, or null
+     */
+    private IdMap(final FileChannel pFile) {
+        this.file = pFile;
+        this.allocate(1024);
+    }
+
+    /**
+     * Open a map backed by a file, created if it doesn't exist, and load its entries.
+     * @param pPath the file path
+     * @return the map
+     * @throws IOException if the file can't be read
+     */
+    public static IdMap open(final Path pPath) throws IOException {
+        final IdMap result = new IdMap(FileChannel.open(pPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        final ByteBuffer buffer = ByteBuffer.allocate(4096 * ENTRY_SIZE);
+        while (result.file.read(buffer) > 0) {
+            buffer.flip();
+            while (buffer.remaining() >= ENTRY_SIZE) {
+                result.putInMemory(buffer.getLong(), buffer.getLong());
+            }
+            buffer.compact();
+        }
+        // an incomplete entry written by a crash is ignored and overwritten
+        result.file.position(Files.size(pPath) / ENTRY_SIZE * ENTRY_SIZE);
+        return result;
+    }
+
+    /**
+     * Return the id of a key.
+     * @param pKey the key, a positive number
+     * @return the id, NOT_FOUND if the key is unknown
+     */
+    public long get(final long pKey) {
+        final int mask = this.keys.length - 1;
+        for (int i = this.hash(pKey) & mask; ; i = (i + 1) & mask) {
+            if (FREE == this.keys[i]) {
+                return NOT_FOUND;
+            }
+            if (pKey == this.keys[i]) {
+                return this.ids[i];
+            }
+        }
+    }
+
+    /**
+     * Put the id of a key.
+     * <p>
+     *     The entry is written to the file by the next sync.
+     * </p>
+     * @param pKey the key, a positive number
+     * @param pId the id, NOT_FOUND to remove the key
+     * @throws UncheckedIOException if the file can't be written
+     */
+    public void put(final long pKey, final long pId) throws UncheckedIOException {
+        this.putInMemory(pKey, pId);
+        if (null != this.file) {
+            if (this.pending.remaining() < ENTRY_SIZE) {
+                try {
+                    this.write();
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            this.pending.putLong(pKey).putLong(pId);
+        }
+    }
+
+    /**
+     * Return the number of keys.
+     * @return the number of keys
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Return the memory used by the arrays.
+     * @return the size in bytes
+     */
+    public long getBytes() {
+        return 2L * Long.BYTES * this.keys.length;
+    }
+
+    /**
+     * Write the new entries to the file and force them to the storage device.
+     * @throws IOException if the file can't be written
+     */
+    public void sync() throws IOException {
+        if (null != this.file) {
+            this.write();
+            this.file.force(false);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (null != this.file) {
+            this.sync();
+            this.file.close();
+        }
+    }
+
+    /**
+     * Write the new entries to the file.
+     * @throws IOException if the file can't be written
+     */
+    private void write() throws IOException {
+        this.pending.flip();
+        while (this.pending.hasRemaining()) {
+            this.file.write(this.pending);
+        }
+        this.pending.clear();
+    }
+
+    /**
+     * Put the id of a key in the arrays, growing them when they are half full.
+     * @param pKey the key
+     * @param pId the id
+     */
+    private void putInMemory(final long pKey, final long pId) {
+        if (pKey < 0) {
+            throw new IllegalArgumentException("Negative key " + pKey);
+        }
+        final int mask = this.keys.length - 1;
+        int i = this.hash(pKey) & mask;
+        while (FREE != this.keys[i] && pKey != this.keys[i]) {
+            i = (i + 1) & mask;
+        }
+        if (FREE == this.keys[i]) {
+            this.keys[i] = pKey;
+            this.size++;
+        }
+        this.ids[i] = pId;
+        if (2 * this.size > this.keys.length) {
+            final long[] oldKeys = this.keys;
+            final long[] oldIds = this.ids;
+            this.allocate(2 * oldKeys.length);
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (FREE != oldKeys[j]) {
+                    this.putInMemory(oldKeys[j], oldIds[j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Allocate empty arrays.
+     * @param pCapacity the capacity, a power of two
+     */
+    private void allocate(final int pCapacity) {
+        this.keys = new long[pCapacity];
+        this.ids = new long[pCapacity];
+        this.size = 0;
+        Arrays.fill(this.keys, FREE);
+    }
+
+    /**
+     * Spread the bits of a key.
+     * @param pKey the key
+     * @return the hash
+     */
+    private int hash(final long pKey) {
+        return (int) ((pKey * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+}
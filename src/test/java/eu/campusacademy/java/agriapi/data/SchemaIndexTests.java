@@ -0,0 +1,167 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.data;
+
+import eu.campusacademy.java.agriapi.data.repositories.CropRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Schema indexes tests
+ * <p>
+ *     The schema is created by Hibernate from the entities. These tests ask H2 the plan of the stats queries of
+ *     CropRepository, crops joined with plots and farms, and check that it uses the indexes declared on the entities.
+ *     The plan depends on the statistics of the tables, so a dataset shaped like the real one is inserted and
+ *     analyzed first: 1000 farms in 250 cities, 50 departments and 13 regions, 4000 plots and 8000 crops of
+ *     50 varieties over 5 years. Its ids are far from the ones of the initial data and it is deleted afterwards.
+ * </p>
+ * @see <a href="http://www.h2database.com/html/performance.html#explain_plan">H2 explain plan</a>
+ */
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class SchemaIndexTests {
+
+    private static final int FIRST_ID = 100000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    void insertData() {
+        jdbcTemplate.update("INSERT INTO farms (id, pacage_code, city_id, department_id, region_id)"
+                + " SELECT " + FIRST_ID + " + x, 'F' || x, " + FIRST_ID + " + MOD(x, 250), " + (FIRST_ID + 1000) + " + MOD(x, 50),"
+                + " " + (FIRST_ID + 2000) + " + MOD(x, 13) FROM SYSTEM_RANGE(1, 1000)");
+        jdbcTemplate.update("INSERT INTO plots (id, farm_id, surface)"
+                + " SELECT " + FIRST_ID + " + x, " + (FIRST_ID + 1) + " + MOD(x, 1000), 5 FROM SYSTEM_RANGE(1, 4000)");
+        jdbcTemplate.update("INSERT INTO crops (id, plot_id, quantity, variety_id, year)"
+                + " SELECT " + FIRST_ID + " + x, " + (FIRST_ID + 1) + " + MOD(x, 4000), 40, " + FIRST_ID + " + MOD(x, 50),"
+                + " 2015 + MOD(x / 50, 5) FROM SYSTEM_RANGE(1, 8000)");
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @AfterAll
+    void deleteData() {
+        jdbcTemplate.update("DELETE FROM crops WHERE id > " + FIRST_ID);
+        jdbcTemplate.update("DELETE FROM plots WHERE id > " + FIRST_ID);
+        jdbcTemplate.update("DELETE FROM farms WHERE id > " + FIRST_ID);
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @Test
+    void statsByCitiesUseFarmsPlotsAndCropsIndexes() {
+        final String plan = explain(CropRepository.AGGREGATE_BY_CITIES.replace(":pCities", (FIRST_ID + 3) + ", " + (FIRST_ID + 4)));
+        assertUses(plan, "IDX_FARMS_CITY");
+        assertUses(plan, "IDX_PLOTS_FARM");
+        assertUses(plan, "IDX_CROPS_VARIETY_YEAR_PLOT");
+    }
+
+    @Test
+    void statsByDepartmentsUseFarmsPlotsAndCropsIndexes() {
+        final String plan = explain(CropRepository.AGGREGATE_BY_DEPARTMENTS.replace(":pDepartments", (FIRST_ID + 1003) + ", " + (FIRST_ID + 1004)));
+        assertUses(plan, "IDX_FARMS_DEPARTMENT");
+        assertUses(plan, "IDX_PLOTS_FARM");
+        assertUses(plan, "IDX_CROPS_VARIETY_YEAR_PLOT");
+    }
+
+    /**
+     * A region holds too many farms for its index to be worth it: crops are found by variety and year, then their
+     * plot and farm by primary key.
+     */
+    @Test
+    void statsByRegionsUseCropsIndex() {
+        final String plan = explain(CropRepository.AGGREGATE_BY_REGIONS.replace(":pRegions", String.valueOf(FIRST_ID + 2003)));
+        assertUses(plan, "IDX_CROPS_VARIETY_YEAR_PLOT");
+        assertFalse(plan.contains("tableScan"), plan);
+    }
+
+    @Test
+    void cropsByVarietiesAndYearUseIndex() {
+        assertPlanUses("SELECT c.plot_id, c.quantity FROM crops c WHERE c.variety_id IN(1, 2) AND c.year = 2019",
+                "IDX_CROPS_VARIETY_YEAR_PLOT");
+    }
+
+    @Test
+    void plotsByFarmUseIndex() {
+        assertPlanUses("SELECT p.id, p.surface FROM plots p WHERE p.farm_id = 1", "IDX_PLOTS_FARM");
+    }
+
+    @Test
+    void farmsByCitiesUseIndex() {
+        assertPlanUses("SELECT f.id FROM farms f WHERE f.city_id IN(1, 2)", "IDX_FARMS_CITY");
+    }
+
+    @Test
+    void farmsByDepartmentsUseIndex() {
+        assertPlanUses("SELECT f.id FROM farms f WHERE f.department_id IN(3, 4)", "IDX_FARMS_DEPARTMENT");
+    }
+
+    @Test
+    void farmsByRegionsUseIndex() {
+        assertPlanUses("SELECT f.id FROM farms f WHERE f.region_id IN(5)", "IDX_FARMS_REGION");
+    }
+
+    @Test
+    void rollupsByDepartmentsUseIndex() {
+        assertPlanUses("SELECT r.yield_count FROM yield_rollups r WHERE r.department_id IN(3, 4) AND r.year IN(2019) AND r.variety_id IN(1, 2)",
+                "IDX_YIELD_ROLLUPS_DEPARTMENT");
+    }
+
+    /**
+     * Return the plan of a stats query of two varieties in 2019.
+     * @param pQuery the query, with its locations already set
+     * @return the plan
+     */
+    private String explain(final String pQuery) {
+        return jdbcTemplate.queryForObject("EXPLAIN " + pQuery.replace(":pVarieties", (FIRST_ID + 1) + ", " + (FIRST_ID + 2))
+                .replace(":pYears", "2019"), String.class);
+    }
+
+    /**
+     * Assert that the plan of a query uses an index.
+     * @param pQuery the query
+     * @param pIndex the index name in upper case
+     */
+    private void assertPlanUses(final String pQuery, final String pIndex) {
+        assertUses(jdbcTemplate.queryForObject("EXPLAIN " + pQuery, String.class), pIndex);
+    }
+
+    /**
+     * Assert that a plan uses an index.
+     * @param pPlan the plan
+     * @param pIndex the index name in upper case
+     */
+    private static void assertUses(final String pPlan, final String pIndex) {
+        assertTrue(pPlan.toUpperCase().contains(pIndex), pPlan);
+    }
+}
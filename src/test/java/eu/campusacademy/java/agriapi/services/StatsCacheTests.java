@@ -0,0 +1,150 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.services;
+
+import eu.campusacademy.java.agriapi.data.domain.Crop;
+import eu.campusacademy.java.agriapi.data.domain.Farm;
+import eu.campusacademy.java.agriapi.data.events.EntityChangeEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * StatsCache tests
+ * <p>
+ *     A change must remove the entries it affects and only them, and a result computed before a change
+ *     must never be cached after it, even when the cache was empty at the time of the change.
+ *     Changes are published out of any transaction so they are invalidated at once.
+ * </p>
+ * @see <a href="https://junit.org/junit5/docs/current/user-guide/">JUnit 5 user guide</a>
+ */
+class StatsCacheTests {
+
+    private static final Map<String, StatisticResult> RESULTS = Collections.emptyMap();
+
+    private final StatsCache cache = new StatsCache(new StatsProperties(), null, null);
+
+    @Test
+    void hitOnlyAfterPut() {
+        final StatisticKey key = key("ALIXAN", 2019, "01");
+        assertNull(cache.get(key));
+        cache.put(key, RESULTS, cache.getGeneration());
+        assertNotNull(cache.get(key));
+        assertNotNull(cache.get(key("ALIXAN", 2019, "01")));
+    }
+
+    @Test
+    void resultComputedBeforeChangeOfEmptyCacheIsNotCached() {
+        final StatisticKey key = key("ALIXAN", 2019, "01");
+        final long generation = cache.getGeneration();
+        cache.onEntityChange(new EntityChangeEvent(null, crop("ALIXAN", 2019)));
+        cache.put(key, RESULTS, generation);
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    void resultComputedBeforeRollupUpdateIsNotCached() {
+        final StatisticKey key = key("ALIXAN", 2019, "01");
+        final long generation = cache.getGeneration();
+        cache.invalidate(Set.of(new VarietyYear("ALIXAN", 2019)));
+        cache.put(key, RESULTS, generation);
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    void resultOfAnOtherHeadlineTypeIsNotHit() {
+        final StatisticParams params = new StatisticParams();
+        params.setYear(2019);
+        params.setVarieties(List.of("ALIXAN"));
+        params.setDepartmentCode(List.of("01"));
+        final Set<StatisticType> averageFirst = new LinkedHashSet<>(List.of(StatisticType.AVERAGE, StatisticType.MAX));
+        final Set<StatisticType> maxFirst = new LinkedHashSet<>(List.of(StatisticType.MAX, StatisticType.AVERAGE));
+        cache.put(StatisticKey.of(params, averageFirst, LocationType.DEPARTMENT, params.getDepartmentCode()), RESULTS, cache.getGeneration());
+        assertNotNull(cache.get(StatisticKey.of(params, averageFirst, LocationType.DEPARTMENT, params.getDepartmentCode())));
+        assertNull(cache.get(StatisticKey.of(params, maxFirst, LocationType.DEPARTMENT, params.getDepartmentCode())));
+    }
+
+    @Test
+    void changeOfCropRemovesItsVarietyAndYear() {
+        final StatisticKey changed = key("ALIXAN", 2019, "01");
+        final StatisticKey otherVariety = key("MAORI", 2019, "01");
+        final StatisticKey otherYear = key("ALIXAN", 2018, "01");
+        List.of(changed, otherVariety, otherYear).forEach(key -> cache.put(key, RESULTS, cache.getGeneration()));
+        cache.onEntityChange(new EntityChangeEvent(crop("ALIXAN", 2019), null));
+        assertNull(cache.get(changed));
+        assertNotNull(cache.get(otherVariety));
+        assertNotNull(cache.get(otherYear));
+    }
+
+    @Test
+    void changeOfFarmRemovesItsLocations() {
+        final StatisticKey changed = key("ALIXAN", 2019, "01");
+        final StatisticKey otherDepartment = key("ALIXAN", 2019, "02");
+        List.of(changed, otherDepartment).forEach(key -> cache.put(key, RESULTS, cache.getGeneration()));
+        final Farm farm = new Farm();
+        farm.setId(1L);
+        farm.setCityCode("01001");
+        farm.setDepartmentCode("01");
+        farm.setRegionCode("84");
+        cache.onEntityChange(new EntityChangeEvent(farm, null));
+        assertNull(cache.get(changed));
+        assertNotNull(cache.get(otherDepartment));
+    }
+
+    /**
+     * Build the key of an average by department.
+     * @param pVariety the variety
+     * @param pYear the year
+     * @param pDepartment the department code
+     * @return the key
+     */
+    private static StatisticKey key(final String pVariety, final int pYear, final String pDepartment) {
+        final StatisticParams params = new StatisticParams();
+        params.setYear(pYear);
+        params.setVarieties(List.of(pVariety));
+        params.setDepartmentCode(List.of(pDepartment));
+        return StatisticKey.of(params, Set.of(StatisticType.AVERAGE), LocationType.DEPARTMENT, params.getDepartmentCode());
+    }
+
+    /**
+     * Build a crop without plot, its location is unknown.
+     * @param pVariety the variety
+     * @param pYear the year
+     * @return the crop
+     */
+    private static Crop crop(final String pVariety, final int pYear) {
+        final Crop result = new Crop();
+        result.setVariety(pVariety);
+        result.setYear(pYear);
+        return result;
+    }
+}
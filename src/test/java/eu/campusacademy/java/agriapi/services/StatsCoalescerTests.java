@@ -0,0 +1,179 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * StatsCoalescer tests
+ * <p>
+ *     Identical requests received together must share one computation, its result and its exception,
+ *     but never a computation started before a cache invalidation.
+ * </p>
+ * @see <a href="https://junit.org/junit5/docs/current/user-guide/">JUnit 5 user guide</a>
+ */
+class StatsCoalescerTests {
+
+    private static final int THREADS = 8;
+
+    private final StatsCoalescer coalescer = new StatsCoalescer(new StatsProperties());
+
+    @Test
+    void concurrentRequestsShareOneComputation() throws Exception {
+        final AtomicInteger computations = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch joined = new CountDownLatch(THREADS - 1);
+        coalescer.setFollowerListener(joined::countDown);
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final Future<Integer> leader = executor.submit(() -> coalescer.execute("key", 0, () -> {
+                started.countDown();
+                await(release);
+                return computations.incrementAndGet();
+            }));
+            started.await();
+            final List<Future<Integer>> followers = new ArrayList<>();
+            for (int i = 1; i < THREADS; i++) {
+                followers.add(executor.submit(() -> coalescer.execute("key", 0, computations::incrementAndGet)));
+            }
+            joined.await();
+            release.countDown();
+            assertEquals(1, leader.get());
+            for (final Future<Integer> follower : followers) {
+                assertEquals(1, follower.get());
+            }
+            assertEquals(1, computations.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void followersReceiveTheException() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch joined = new CountDownLatch(1);
+        coalescer.setFollowerListener(joined::countDown);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<Integer> leader = executor.submit(() -> coalescer.<Integer>execute("key", 0, () -> {
+                started.countDown();
+                await(release);
+                throw new IllegalArgumentException("No variety");
+            }));
+            started.await();
+            final Future<Integer> follower = executor.submit(() -> coalescer.execute("key", 0, () -> 1));
+            joined.await();
+            release.countDown();
+            for (final Future<Integer> future : List.of(leader, follower)) {
+                final ExecutionException e = assertThrows(ExecutionException.class, future::get);
+                assertTrue(e.getCause() instanceof IllegalArgumentException);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void interruptedFollowerIsReleased() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch joined = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        coalescer.setFollowerListener(joined::countDown);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<Integer> leader = executor.submit(() -> coalescer.execute("key", 0, () -> {
+                started.countDown();
+                await(release);
+                return 0;
+            }));
+            started.await();
+            final Future<?> follower = executor.submit(() -> {
+                try {
+                    coalescer.execute("key", 0, () -> 1);
+                } catch (final CompletionException e) {
+                    error.set(e.getCause());
+                } finally {
+                    released.countDown();
+                }
+            });
+            joined.await();
+            follower.cancel(true);
+            assertTrue(released.await(5, TimeUnit.SECONDS));
+            assertTrue(error.get() instanceof InterruptedException);
+            assertFalse(leader.isDone());
+            release.countDown();
+            assertEquals(0, leader.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void newGenerationStartsNewComputation() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<Integer> outdated = executor.submit(() -> coalescer.execute("key", 0, () -> {
+                started.countDown();
+                await(release);
+                return 0;
+            }));
+            started.await();
+            assertEquals(1, coalescer.execute("key", 1, () -> 1));
+            release.countDown();
+            assertEquals(0, outdated.get());
+            assertEquals(2, coalescer.execute("key", 1, () -> 2));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Wait for a latch without checked exception.
+     * @param pLatch the latch
+     */
+    private static void await(final CountDownLatch pLatch) {
+        try {
+            pLatch.await();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
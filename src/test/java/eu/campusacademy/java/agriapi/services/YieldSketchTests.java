@@ -0,0 +1,110 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * YieldSketch tests
+ * <p>
+ *     A quantile estimated by the sketch must stay within the relative accuracy of the exact quantile,
+ *     and merging or serializing sketches must not change any estimate.
+ * </p>
+ * @see <a href="https://junit.org/junit5/docs/current/user-guide/">JUnit 5 user guide</a>
+ */
+class YieldSketchTests {
+
+    private static final double[] QUANTILES = { 0, 0.1, 0.25, 0.5, 0.75, 0.9, 1 };
+
+    @Test
+    void quantilesWithinRelativeAccuracy() {
+        final Random random = new Random(2020);
+        for (int i = 0; i < 100; i++) {
+            final long[] yields = new long[1 + random.nextInt(5000)];
+            final YieldSketch sketch = new YieldSketch();
+            for (int j = 0; j < yields.length; j++) {
+                yields[j] = 1 + random.nextInt(1_000_000);
+                sketch.add(yields[j]);
+            }
+            Arrays.sort(yields);
+            for (final double quantile : QUANTILES) {
+                final long exact = yields[(int) Math.floor(quantile * (yields.length - 1))];
+                final long estimated = sketch.getQuantile(quantile);
+                assertTrue(Math.abs(estimated - exact) <= exact * YieldSketch.RELATIVE_ACCURACY + 1,
+                        "quantile " + quantile + " of " + yields.length + " yields: " + estimated + " instead of " + exact);
+            }
+        }
+    }
+
+    @Test
+    void mergeGivesSameQuantilesAsOneSketch() {
+        final Random random = new Random(2020);
+        final YieldSketch all = new YieldSketch();
+        final YieldSketch merged = new YieldSketch();
+        for (int i = 0; i < 10; i++) {
+            final YieldSketch part = new YieldSketch();
+            for (int j = random.nextInt(1000); j >= 0; j--) {
+                final long yield = random.nextInt(100) == 0 ? 0 : 100 * i + random.nextInt(100_000);
+                all.add(yield);
+                part.add(yield);
+            }
+            merged.merge(part);
+        }
+        assertEquals(all.getCount(), merged.getCount());
+        for (final double quantile : QUANTILES) {
+            assertEquals(all.getQuantile(quantile), merged.getQuantile(quantile));
+        }
+    }
+
+    @Test
+    void bytesGiveSameQuantiles() {
+        final Random random = new Random(2020);
+        final YieldSketch sketch = new YieldSketch();
+        for (int i = 0; i < 10000; i++) {
+            sketch.add(random.nextInt(200_000));
+        }
+        final YieldSketch read = YieldSketch.of(sketch.toBytes());
+        assertEquals(sketch.getCount(), read.getCount());
+        for (final double quantile : QUANTILES) {
+            assertEquals(sketch.getQuantile(quantile), read.getQuantile(quantile));
+        }
+    }
+
+    @Test
+    void summaryMedianIsBoundedByMinAndMax() {
+        final YieldSummary summary = YieldSummary.withSketch();
+        summary.add(new BigDecimal("1.00"), new BigDecimal("3.00"));
+        assertEquals(new BigDecimal("3.34"), summary.getValue(StatisticType.MEDIAN));
+        assertNull(new YieldSummary().getValue(StatisticType.MEDIAN));
+        assertNull(new YieldSketch().getQuantile(0.5));
+    }
+}
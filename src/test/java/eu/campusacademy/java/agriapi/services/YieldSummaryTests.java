@@ -0,0 +1,118 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * YieldSummary tests
+ * <p>
+ *     The fixed-point computation of YieldSummary must give exactly the same values, scale included,
+ *     than the BigDecimal computation it replaces. Quantiles are estimated, they are tested by YieldSketchTests.
+ * </p>
+ * @see <a href="https://junit.org/junit5/docs/current/user-guide/">JUnit 5 user guide</a>
+ */
+class YieldSummaryTests {
+
+    @Test
+    void sameValuesAsBigDecimalComputation() {
+        final Random random = new Random(2020);
+        for (int i = 0; i < 1000; i++) {
+            final List<BigDecimal[]> crops = new ArrayList<>();
+            final YieldSummary summary = new YieldSummary();
+            for (int j = random.nextInt(50); j >= 0; j--) {
+                final BigDecimal quantity = BigDecimal.valueOf(random.nextInt(100000), 2);
+                final BigDecimal surface = BigDecimal.valueOf(1 + random.nextInt(5000), 2);
+                crops.add(new BigDecimal[] { quantity, surface });
+                summary.add(quantity, surface);
+            }
+            for (final StatisticType type : EnumSet.of(StatisticType.AVERAGE, StatisticType.MIN, StatisticType.MAX, StatisticType.WEIGHTED_AVERAGE)) {
+                assertEquals(getResult(crops, type), summary.getValue(type), type + " of " + crops.size() + " crops");
+            }
+        }
+    }
+
+    @Test
+    void yieldIsRoundedUp() {
+        final YieldSummary summary = new YieldSummary();
+        summary.add(new BigDecimal("1.00"), new BigDecimal("3.00"));
+        assertEquals(new BigDecimal("3.34"), summary.getValue(StatisticType.MIN));
+    }
+
+    @Test
+    void noValueWithoutCrop() {
+        for (final StatisticType type : StatisticType.values()) {
+            assertNull(new YieldSummary().getValue(type));
+        }
+    }
+
+    /**
+     * The BigDecimal computation used before YieldSummary.
+     * @param pCrops the quantities and surfaces of crops
+     * @param pType the statistic type
+     * @return value of statistic
+     */
+    private BigDecimal getResult(final List<BigDecimal[]> pCrops, final StatisticType pType) {
+        BigDecimal result = null;
+        List<BigDecimal> yields = new ArrayList<>();
+        pCrops.forEach(crop -> {
+            BigDecimal qt = crop[0].multiply(BigDecimal.TEN);
+            BigDecimal sh = crop[1];
+            yields.add(qt.divide(sh, RoundingMode.UP));
+        });
+        if(yields.size() > 0) {
+            switch (pType) {
+                case MIN: {
+                    result = Collections.min(yields);
+                    break;
+                }
+                case MAX: {
+                    result = Collections.max(yields);
+                    break;
+                }
+                case AVERAGE: {
+                    BigDecimal sum = yields.stream().filter(Objects::nonNull).reduce(BigDecimal.ZERO, BigDecimal::add);
+                    result = sum.divide(new BigDecimal(yields.size()), RoundingMode.UP);
+                    break;
+                }
+                case WEIGHTED_AVERAGE: {
+                    BigDecimal quantity = pCrops.stream().map(crop -> crop[0]).reduce(BigDecimal.ZERO, BigDecimal::add);
+                    BigDecimal surface = pCrops.stream().map(crop -> crop[1]).reduce(BigDecimal.ZERO, BigDecimal::add);
+                    result = quantity.multiply(BigDecimal.TEN).divide(surface, RoundingMode.UP);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+}
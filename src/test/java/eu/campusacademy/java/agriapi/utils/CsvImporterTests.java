@@ -0,0 +1,196 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.utils;
+
+import eu.campusacademy.java.agriapi.data.domain.Crop;
+import eu.campusacademy.java.agriapi.data.domain.Farm;
+import eu.campusacademy.java.agriapi.data.domain.ImportCheckpoint;
+import eu.campusacademy.java.agriapi.data.domain.Plot;
+import eu.campusacademy.java.agriapi.data.repositories.CropRepository;
+import eu.campusacademy.java.agriapi.data.repositories.FarmRepository;
+import eu.campusacademy.java.agriapi.data.repositories.ImportCheckpointRepository;
+import eu.campusacademy.java.agriapi.data.repositories.PlotRepository;
+import eu.campusacademy.java.agriapi.services.ImportProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * CsvImporter tests
+ * <p>
+ *     Files are imported from a temporary directory into mocked repositories, which give ids to saved entities
+ *     and keep checkpoints in a map, with a flush size of 2 lines so that files are saved by several batches.
+ * </p>
+ * @see <a href="https://junit.org/junit5/docs/current/user-guide/">JUnit 5 user guide</a>
+ */
+class CsvImporterTests {
+
+    @TempDir
+    Path directory;
+
+    private final FarmRepository farmRepository = mock(FarmRepository.class);
+    private final PlotRepository plotRepository = mock(PlotRepository.class);
+    private final CropRepository cropRepository = mock(CropRepository.class);
+    private final ImportCheckpointRepository importCheckpointRepository = mock(ImportCheckpointRepository.class);
+
+    private final List<Farm> farms = new ArrayList<>();
+    private final List<Plot> plots = new ArrayList<>();
+    private final List<Crop> crops = new ArrayList<>();
+    private final Map<String, ImportCheckpoint> checkpoints = new HashMap<>();
+
+    CsvImporterTests() {
+        when(farmRepository.saveAll(any())).thenAnswer(invocation -> save(invocation.getArgument(0), farms, Farm::setId));
+        when(plotRepository.saveAll(any())).thenAnswer(invocation -> save(invocation.getArgument(0), plots, Plot::setId));
+        when(cropRepository.saveAll(any())).thenAnswer(invocation -> save(invocation.getArgument(0), crops, Crop::setId));
+        when(importCheckpointRepository.findById(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(checkpoints.get(invocation.<String>getArgument(0))));
+        when(importCheckpointRepository.save(any())).thenAnswer(invocation -> {
+            final ImportCheckpoint checkpoint = invocation.getArgument(0);
+            checkpoints.put(checkpoint.getFileName(), checkpoint);
+            return checkpoint;
+        });
+    }
+
+    @Test
+    void filesAreImportedAndInvalidLinesRejected() throws Exception {
+        write("farms.csv", "pacage;city;department;region\r\n"
+                + "49-85456-98;49420;49;52\r\n"
+                + "498545698;49421;49;52\r\n"
+                + "53-85456-98;53800;53;52\r\n"
+                + "53-00000-01;53800;53\r\n");
+        write("plots.csv", "pacage;number;surface\n"
+                + "49-85456-98;1;5,5\n"
+                + "49-85456-98;2;4.25\n"
+                + "12-34567-89;1;3\n");
+        write("crops.csv", "pacage;number;year;variety;quantity\n"
+                + "49-85456-98;1;2019;ALIXAN;34,5\n"
+                + "49-85456-98;2;2019;MAORI;20\n"
+                + "49-85456-98;3;2019;MAORI;20\n"
+                + "49-85456-98;2;2019;;20");
+        importer().run(null);
+        assertEquals(List.of("49-85456-98", "53-85456-98"), farms.stream().map(Farm::getPacageCode).collect(Collectors.toList()));
+        assertEquals(2L, checkpoints.get("farms.csv").getRejectedLines().longValue());
+        assertEquals(2, plots.size());
+        assertEquals(farms.get(0).getId(), plots.get(0).getFarmId());
+        assertEquals(new BigDecimal("5.5"), plots.get(0).getSurface());
+        assertEquals(1L, checkpoints.get("plots.csv").getRejectedLines().longValue());
+        assertEquals(2, crops.size());
+        assertEquals(plots.get(0).getId(), crops.get(0).getPlotId());
+        assertEquals(new BigDecimal("34.5"), crops.get(0).getQuantity());
+        assertEquals(plots.get(1).getId(), crops.get(1).getPlotId());
+        assertEquals(2L, checkpoints.get("crops.csv").getRejectedLines().longValue());
+        assertEquals(Files.size(directory.resolve("crops.csv")), checkpoints.get("crops.csv").getNextOffset().longValue());
+    }
+
+    @Test
+    void plotFoundTwiceInABatchIsRejected() throws Exception {
+        write("farms.csv", "pacage;city;department;region\n"
+                + "49-85456-98;49420;49;52\n");
+        write("plots.csv", "pacage;number;surface\n"
+                + "49-85456-98;1;5,5\n"
+                + "49-85456-98;1;6\n"
+                + "49-85456-98;2;4.25\n");
+        write("crops.csv", "pacage;number;year;variety;quantity\n"
+                + "49-85456-98;1;2019;ALIXAN;34,5\n");
+        importer().run(null);
+        assertEquals(2, plots.size());
+        assertEquals(new BigDecimal("5.5"), plots.get(0).getSurface());
+        assertEquals(new BigDecimal("4.25"), plots.get(1).getSurface());
+        assertEquals(1L, checkpoints.get("plots.csv").getRejectedLines().longValue());
+        assertEquals(1, crops.size());
+        assertEquals(plots.get(0).getId(), crops.get(0).getPlotId());
+    }
+
+    @Test
+    void importStartsAgainFromCheckpoint() throws Exception {
+        final String header = "pacage;city;department;region\n";
+        final String imported = "49-85456-98;49420;49;52\n";
+        write("farms.csv", header + imported + "53-85456-98;53800;53;52\n");
+        checkpoints.put("farms.csv", new ImportCheckpoint("farms.csv", (long) (header + imported).length(), 1L, 0L));
+        importer().run(null);
+        assertEquals(1, farms.size());
+        assertEquals("53-85456-98", farms.get(0).getPacageCode());
+        assertEquals(2L, checkpoints.get("farms.csv").getImportedRows().longValue());
+        importer().run(null);
+        assertEquals(1, farms.size());
+    }
+
+    /**
+     * Create an importer of the temporary directory over the mocked repositories.
+     * @return the importer
+     */
+    private CsvImporter importer() {
+        final ImportProperties importProperties = new ImportProperties();
+        importProperties.setCsvDirectory(directory.toString());
+        importProperties.setFlushSize(2);
+        importProperties.setCsvBufferSize(64);
+        return new CsvImporter(farmRepository, plotRepository, cropRepository, importCheckpointRepository, importProperties,
+                mock(PlatformTransactionManager.class));
+    }
+
+    /**
+     * Give ids to saved entities and keep them.
+     * @param pEntities the entities to save
+     * @param pSaved the saved entities
+     * @param pSetId the setter of the id
+     * @param <T> the entity type
+     * @return the entities
+     */
+    private static <T> List<T> save(final Iterable<T> pEntities, final List<T> pSaved, final BiConsumer<T, Long> pSetId) {
+        final List<T> result = new ArrayList<>();
+        for (final T entity : pEntities) {
+            pSaved.add(entity);
+            pSetId.accept(entity, (long) pSaved.size());
+            result.add(entity);
+        }
+        return result;
+    }
+
+    /**
+     * Write a file of the temporary directory.
+     * @param pName the file name
+     * @param pContent the file content
+     * @throws IOException if the file can't be written
+     */
+    private void write(final String pName, final String pContent) throws IOException {
+        Files.write(directory.resolve(pName), pContent.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,130 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CsvReader tests
+ * <p>
+ *     Lines are read from temporary files with a small buffer, so most lines are split across two reads.
+ * </p>
+ * @see <a href="https://junit.org/junit5/docs/current/user-guide/">JUnit 5 user guide</a>
+ */
+class CsvReaderTests {
+
+    private static final int BUFFER_SIZE = 16;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void crlfIsRemovedFromLastField() throws IOException {
+        try (CsvReader reader = open("ALIXAN;12\r\nMAORI;7\r\n", 0)) {
+            assertTrue(reader.next());
+            assertEquals(2, reader.getFieldCount());
+            assertEquals("ALIXAN", reader.getString(0));
+            assertEquals(12, reader.getLong(1));
+            assertTrue(reader.next());
+            assertEquals("MAORI", reader.getString(0));
+            assertEquals(7, reader.getLong(1));
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    void lastLineWithoutNewLineIsRead() throws IOException {
+        final String content = "ALIXAN;12\nMAORI;7";
+        try (CsvReader reader = open(content, 0)) {
+            assertTrue(reader.next());
+            assertTrue(reader.next());
+            assertEquals("MAORI", reader.getString(0));
+            assertEquals(7, reader.getLong(1));
+            assertEquals(content.length(), reader.getOffset());
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    void lineLongerThanBufferIsRefused() throws IOException {
+        try (CsvReader reader = open("ALIXAN;12\nA VERY LONG VARIETY NAME;7\n", 0)) {
+            assertTrue(reader.next());
+            assertThrows(IllegalStateException.class, reader::next);
+        }
+    }
+
+    @Test
+    void decimalSeparatorIsCommaOrDot() throws IOException {
+        try (CsvReader reader = open("12,5;12.50;-3;\n", 0)) {
+            assertTrue(reader.next());
+            assertEquals(new BigDecimal("12.5"), reader.getDecimal(0));
+            assertEquals(new BigDecimal("12.50"), reader.getDecimal(1));
+            assertEquals(new BigDecimal("-3"), reader.getDecimal(2));
+            assertNull(reader.getString(3));
+            assertThrows(NumberFormatException.class, () -> reader.getDecimal(3));
+        }
+    }
+
+    @Test
+    void readingStartsAgainFromOffset() throws IOException {
+        final String content = "ALIXAN;12\r\nMAORI;7\r\nHENDRIX;35\r\n";
+        final long offset;
+        try (CsvReader reader = open(content, 0)) {
+            assertTrue(reader.next());
+            assertTrue(reader.next());
+            offset = reader.getOffset();
+        }
+        assertEquals(content.indexOf("HENDRIX"), offset);
+        try (CsvReader reader = new CsvReader(directory.resolve("test.csv"), offset, BUFFER_SIZE, ';', 2)) {
+            assertTrue(reader.next());
+            assertEquals("HENDRIX", reader.getString(0));
+            assertEquals(35, reader.getLong(1));
+            assertEquals(content.length(), reader.getOffset());
+            assertFalse(reader.next());
+        }
+    }
+
+    /**
+     * Write a temporary file and open it.
+     * @param pContent the file content
+     * @param pOffset the offset of the first line to read
+     * @return the reader
+     * @throws IOException if the file can't be written or opened
+     */
+    private CsvReader open(final String pContent, final long pOffset) throws IOException {
+        final Path file = Files.write(directory.resolve("test.csv"), pContent.getBytes(StandardCharsets.UTF_8));
+        return new CsvReader(file, pOffset, BUFFER_SIZE, ';', 4);
+    }
+}
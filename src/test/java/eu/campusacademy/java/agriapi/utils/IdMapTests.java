@@ -0,0 +1,103 @@
+//==============================================================================
+// Copyright 2020 Nicolas Audéon
+//
+// Redistribution and use in source and binary forms, with or without modification,
+// are permitted provided that the following conditions are met :
+//
+// 1. Redistributions of source code must retain the above copyright notice,
+// this list of conditions and the following disclaimer.
+//
+// 2. Redistributions in binary form must reproduce the above copyright notice,
+// this list of conditions and the following disclaimer in the documentation
+// and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+// THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+// PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+// EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+// PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+// OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//==============================================================================
+package eu.campusacademy.java.agriapi.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * IdMap tests
+ * <p>
+ *     Entries must survive growing the arrays and reopening the file, and an incomplete entry left by a crash
+ *     must be ignored then overwritten.
+ * </p>
+ * @see <a href="https://junit.org/junit5/docs/current/user-guide/">JUnit 5 user guide</a>
+ */
+class IdMapTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void lastPutWinsAfterGrowing() {
+        final IdMap map = new IdMap();
+        for (long key = 0; key < 5000; key++) {
+            map.put(key, key + 1);
+        }
+        map.put(42, 7);
+        assertEquals(5000, map.size());
+        assertEquals(7, map.get(42));
+        assertEquals(5000, map.get(4999));
+        assertEquals(IdMap.NOT_FOUND, map.get(5000));
+        assertThrows(IllegalArgumentException.class, () -> map.put(-1, 1));
+    }
+
+    @Test
+    void entriesAreReadBackFromFile() throws IOException {
+        final Path file = directory.resolve("plots.idmap");
+        try (IdMap map = IdMap.open(file)) {
+            map.put(4985456980001L, 1);
+            map.put(4985456980002L, 2);
+            map.put(4985456980001L, 3);
+        }
+        try (IdMap map = IdMap.open(file)) {
+            assertEquals(2, map.size());
+            assertEquals(3, map.get(4985456980001L));
+            assertEquals(2, map.get(4985456980002L));
+        }
+    }
+
+    @Test
+    void truncatedEntryIsIgnoredThenOverwritten() throws IOException {
+        final Path file = directory.resolve("plots.idmap");
+        try (IdMap map = IdMap.open(file)) {
+            map.put(1, 10);
+            map.put(2, 20);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - 5);
+        }
+        try (IdMap map = IdMap.open(file)) {
+            assertEquals(10, map.get(1));
+            assertEquals(IdMap.NOT_FOUND, map.get(2));
+            map.put(3, 30);
+        }
+        assertEquals(2 * 2 * Long.BYTES, Files.size(file));
+        try (IdMap map = IdMap.open(file)) {
+            assertEquals(10, map.get(1));
+            assertEquals(IdMap.NOT_FOUND, map.get(2));
+            assertEquals(30, map.get(3));
+        }
+    }
+}